@@ -0,0 +1,183 @@
+/**
+ * Precomputed attack tables for every Kwazam piece type
+ */
+
+package model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static model.ChessBoard.COLS;
+import static model.ChessBoard.ROWS;
+import static model.ChessBoard.SQUARES;
+
+/**
+ * Lookup tables built once at class load for the 8x5 board.
+ * Biz and Sau get plain jump masks, Ram gets one push mask per color and direction,
+ * and Tor and Xor use magic-indexed tables so a slide is one multiply and one load.
+ * None of the masks exclude friendly pieces, callers do that with the color masks.
+ */
+public final class Attacks {
+    private static final int[][] ROOK_STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_STEPS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] BIZ_STEPS = {
+        {2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}
+    };
+    private static final int[][] SAU_STEPS = {
+        {1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}
+    };
+
+    private static final long[] BIZ = new long[SQUARES];
+    private static final long[] SAU = new long[SQUARES];
+    // Indexed by color * 2 + (reversed ? 1 : 0)
+    private static final long[][] RAM = new long[4][SQUARES];
+
+    private static final Slider TOR = new Slider(ROOK_STEPS, 0x9E3779B97F4A7C15L);
+    private static final Slider XOR = new Slider(BISHOP_STEPS, 0xC2B2AE3D27D4EB4FL);
+
+    static {
+        for (int square = 0; square < SQUARES; square++) {
+            BIZ[square] = jumps(square, BIZ_STEPS);
+            SAU[square] = jumps(square, SAU_STEPS);
+
+            int row = square / COLS;
+            for (PieceColor color : PieceColor.values()) {
+                int forward = color == PieceColor.RED ? 1 : -1;
+                RAM[color.ordinal() * 2][square] = bit(row + forward, square % COLS);
+                RAM[color.ordinal() * 2 + 1][square] = bit(row - forward, square % COLS);
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long biz(int square) {
+        return BIZ[square];
+    }
+
+    public static long sau(int square) {
+        return SAU[square];
+    }
+
+    public static long ram(PieceColor color, boolean reversed, int square) {
+        return RAM[color.ordinal() * 2 + (reversed ? 1 : 0)][square];
+    }
+
+    public static long tor(int square, long occupied) {
+        return TOR.attacks(square, occupied);
+    }
+
+    public static long xor(int square, long occupied) {
+        return XOR.attacks(square, occupied);
+    }
+
+    private static long jumps(int square, int[][] steps) {
+        long mask = 0;
+        for (int[] step : steps) {
+            mask |= bit(square / COLS + step[0], square % COLS + step[1]);
+        }
+        return mask;
+    }
+
+    private static long bit(int row, int col) {
+        if (row < 0 || row >= ROWS || col < 0 || col >= COLS) {
+            return 0;
+        }
+        return 1L << (row * COLS + col);
+    }
+
+    // Slides from a square along the given steps, stopping on (and including) the first blocker
+    private static long slide(int square, long occupied, int[][] steps) {
+        long mask = 0;
+        for (int[] step : steps) {
+            int row = square / COLS + step[0];
+            int col = square % COLS + step[1];
+            while (row >= 0 && row < ROWS && col >= 0 && col < COLS) {
+                long bit = 1L << (row * COLS + col);
+                mask |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                row += step[0];
+                col += step[1];
+            }
+        }
+        return mask;
+    }
+
+    // Squares whose occupancy can change the slide: every ray without its edge square
+    private static long relevantMask(int square, int[][] steps) {
+        long mask = 0;
+        for (int[] step : steps) {
+            int row = square / COLS + step[0];
+            int col = square % COLS + step[1];
+            while (row + step[0] >= 0 && row + step[0] < ROWS
+                && col + step[1] >= 0 && col + step[1] < COLS) {
+                mask |= 1L << (row * COLS + col);
+                row += step[0];
+                col += step[1];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Occupancy-indexed attack table for one sliding piece.
+     * Magic multipliers are searched for at class load with a fixed seed.
+     */
+    private static final class Slider {
+        private final long[] masks = new long[SQUARES];
+        private final long[] magics = new long[SQUARES];
+        private final int[] shifts = new int[SQUARES];
+        private final long[][] tables = new long[SQUARES][];
+
+        Slider(int[][] steps, long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int square = 0; square < SQUARES; square++) {
+                long mask = relevantMask(square, steps);
+                int bits = Long.bitCount(mask);
+                int size = 1 << bits;
+
+                long[] occupancies = new long[size];
+                long[] attacks = new long[size];
+                long subset = 0;
+                for (int i = 0; i < size; i++) {
+                    occupancies[i] = subset;
+                    attacks[i] = slide(square, subset, steps);
+                    subset = (subset - mask) & mask;
+                }
+
+                // One index bit more than needed keeps the magic search short at startup.
+                // Every slide reaches at least one square, so 0 marks an unused slot.
+                long[] table = new long[size * 2];
+                while (true) {
+                    long magic = random.nextLong() & random.nextLong() & random.nextLong();
+
+                    Arrays.fill(table, 0L);
+                    boolean collision = false;
+                    for (int i = 0; i < size && !collision; i++) {
+                        int index = (int) ((occupancies[i] * magic) >>> (63 - bits));
+                        if (table[index] == 0) {
+                            table[index] = attacks[i];
+                        } else if (table[index] != attacks[i]) {
+                            collision = true;
+                        }
+                    }
+                    if (!collision) {
+                        masks[square] = mask;
+                        magics[square] = magic;
+                        shifts[square] = 63 - bits;
+                        tables[square] = table;
+                        break;
+                    }
+                }
+            }
+        }
+
+        long attacks(int square, long occupied) {
+            long index = ((occupied & masks[square]) * magics[square]) >>> shifts[square];
+            return tables[square][(int) index];
+        }
+    }
+}
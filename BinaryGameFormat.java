@@ -0,0 +1,126 @@
+/**
+ * Compact versioned binary encoding of saved games
+ */
+
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Building blocks of the binary save format written by GameManager.writeBinary.
+ *
+ * Version 1 layout:
+ *   "KWZB" magic, version byte
+ *   player names (modified UTF-8), turn count (varint)
+ *   flags byte (bit 0: Red to move, bit 1: game ended), move count (varint)
+ *   board: 40 squares x 4 bits, then 5 bytes of reversed-Ram bits
+ *   history lines loaded from a legacy text save (varint count, UTF each)
+ *   moves played since that position (varint count, 2 bytes each)
+ *
+ * The stored board is where the move list starts (the initial setup for a new game),
+ * so the loader rebuilds the exact final position, Ram flags and transform phase
+ * by replaying the moves. A fresh game with 40 moves takes about 120 bytes.
+ */
+public final class BinaryGameFormat {
+    public static final byte[] MAGIC = {'K', 'W', 'Z', 'B'};
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".kwz";
+
+    static final int FLAG_RED_TO_MOVE = 1;
+    static final int FLAG_GAME_ENDED = 2;
+
+    private static final PieceType[] TYPES = PieceType.values();
+
+    private BinaryGameFormat() {
+    }
+
+    /**
+     * Whether a file header starts with the binary magic
+     */
+    public static boolean isBinary(byte[] header, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the pieces as one nibble per square (0 empty, else type + 1, +8 for Blue)
+     * followed by the reversed-Ram mask
+     */
+    static void writeBoard(DataOutput out, ChessBoard board) throws IOException {
+        for (int square = 0; square < ChessBoard.SQUARES; square += 2) {
+            out.writeByte(nibble(board, square) | nibble(board, square + 1) << 4);
+        }
+        long reversed = board.getRamReversedMask();
+        for (int i = 0; i < 5; i++) {
+            out.writeByte((int) (reversed >>> (i * 8)));
+        }
+    }
+
+    /**
+     * Replaces every square of the board with what was written by writeBoard
+     */
+    static void readBoard(DataInput in, ChessBoard board) throws IOException {
+        for (int square = 0; square < ChessBoard.SQUARES; square += 2) {
+            int packed = in.readUnsignedByte();
+            place(board, square, packed & 0xF);
+            place(board, square + 1, packed >>> 4);
+        }
+        long reversed = 0;
+        for (int i = 0; i < 5; i++) {
+            reversed |= (long) in.readUnsignedByte() << (i * 8);
+        }
+        for (long bits = reversed; bits != 0; bits &= bits - 1) {
+            int square = Long.numberOfTrailingZeros(bits);
+            board.setRamReversed(square / ChessBoard.COLS, square % ChessBoard.COLS, true);
+        }
+    }
+
+    private static int nibble(ChessBoard board, int square) {
+        PieceColor color = board.getColorAt(square);
+        if (color == null) {
+            return 0;
+        }
+        return (board.getTypeAt(square).ordinal() + 1) | (color == PieceColor.BLUE ? 8 : 0);
+    }
+
+    private static void place(ChessBoard board, int square, int nibble) throws IOException {
+        Piece piece = null;
+        if (nibble != 0) {
+            int type = (nibble & 7) - 1;
+            if (type < 0 || type >= TYPES.length) {
+                throw new IOException("Corrupt board square " + square);
+            }
+            piece = Piece.of(TYPES[type], (nibble & 8) != 0 ? PieceColor.BLUE : PieceColor.RED);
+        }
+        board.placePiece(square / ChessBoard.COLS, square % ChessBoard.COLS, piece);
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -9,21 +9,19 @@ package model;
  * @author Seow Rou
  */
 public class BizPiece extends Piece {
-    public BizPiece(PieceColor color) {
+    BizPiece(PieceColor color) {
         super(color);
     }
 
     @Override
     public boolean canMove(ChessBoard board, int fromRow, int fromCol, int toRow, int toCol) {
-        int rowDiff = Math.abs(toRow - fromRow);
-        int colDiff = Math.abs(toCol - fromCol);
-
-        if ((rowDiff == 2 && colDiff == 1) || (rowDiff == 1 && colDiff == 2)) {
-            Piece targetPiece = board.getPiece(toRow, toCol);
-            return targetPiece == null || targetPiece.getColor() != this.color;
-        }
+        long targets = Attacks.biz(ChessBoard.square(fromRow, fromCol)) & ~board.getColorMask(color);
+        return (targets & (1L << ChessBoard.square(toRow, toCol))) != 0;
+    }
 
-        return false;
+    @Override
+    public PieceType getType() {
+        return PieceType.BIZ;
     }
 
     @Override
@@ -0,0 +1,213 @@
+/**
+ * Custom-painted game board
+ */
+
+package view;
+
+import controller.KwazamChessController;
+import model.ChessBoard;
+import util.FlightEvents;
+import util.Metrics;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+
+/**
+ * Draws the whole board in one component from a SpriteCache. It remembers what
+ * each square showed last time, so update only repaints the squares whose
+ * piece or highlight changed, and a single mouse listener maps clicks to squares.
+ */
+public class BoardPanel extends JComponent {
+    /**
+     * Receives clicks as board coordinates
+     */
+    public interface CellListener {
+        void cellClicked(int row, int col);
+    }
+
+    private static final Metrics.Histogram PAINT_TIME = Metrics.histogram("view.paintBoard");
+
+    private static final int ROWS = ChessBoard.ROWS;
+    private static final int COLS = ChessBoard.COLS;
+    private static final int PIECE_MARGIN = 5;
+    private static final Color HIGHLIGHT_COLOR = new Color(255, 255, 0);
+    private static final Color SELECTED_COLOR = new Color(173, 216, 230);
+    private static final Color LIGHT_COLOR = new Color(212, 186, 149);
+    private static final Color DARK_COLOR = new Color(153, 99, 54);
+
+    // Square states
+    private static final int PLAIN = 0;
+    private static final int SELECTED = 1;
+    private static final int TARGET = 2;
+
+    private final SpriteCache sprites = new SpriteCache();
+    private final String[] imagePaths = new String[ChessBoard.SQUARES];
+    private final int[] states = new int[ChessBoard.SQUARES];
+    private boolean flipped;
+    private int spriteSize;
+
+    public BoardPanel(int cellSize, CellListener listener) {
+        setPreferredSize(new Dimension(COLS * cellSize, ROWS * cellSize));
+        setOpaque(true);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int cell = getCellSize();
+                int x = e.getX() - getOffsetX(cell);
+                int y = e.getY() - getOffsetY(cell);
+                if (cell <= 0 || x < 0 || y < 0 || x >= COLS * cell || y >= ROWS * cell) {
+                    return;
+                }
+                int row = y / cell;
+                int col = x / cell;
+                if (flipped) {
+                    row = ROWS - 1 - row;
+                    col = COLS - 1 - col;
+                }
+                listener.cellClicked(row, col);
+            }
+        });
+    }
+
+    /**
+     * Takes the pieces and highlights from the controller and repaints what changed
+     * @param flipped whether Red's side is at the bottom
+     */
+    public void update(KwazamChessController controller, boolean flipped) {
+        boolean repaintAll = setFlipped(flipped);
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                int state = controller.isSelected(row, col) ? SELECTED
+                    : controller.isValidMovePosition(row, col) ? TARGET : PLAIN;
+                setCell(row, col, controller.getImagePathAt(row, col), state, repaintAll);
+            }
+        }
+        if (repaintAll) {
+            repaint();
+        }
+    }
+
+    /**
+     * Shows a board with no highlights, e.g. a position of a replay, and repaints what changed
+     */
+    public void update(ChessBoard board, boolean flipped) {
+        boolean repaintAll = setFlipped(flipped);
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                setCell(row, col, board.getImagePath(row, col), PLAIN, repaintAll);
+            }
+        }
+        if (repaintAll) {
+            repaint();
+        }
+    }
+
+    // @return true if the flip changed, so everything has to be repainted
+    private boolean setFlipped(boolean flipped) {
+        boolean changed = flipped != this.flipped;
+        this.flipped = flipped;
+        return changed;
+    }
+
+    private void setCell(int row, int col, String imagePath, int state, boolean repaintAll) {
+        int square = ChessBoard.square(row, col);
+        if (state != states[square] || !Objects.equals(imagePath, imagePaths[square])) {
+            states[square] = state;
+            imagePaths[square] = imagePath;
+            if (!repaintAll) {
+                repaintCell(row, col);
+            }
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (!Metrics.ENABLED) {
+            paintBoard(g);
+            return;
+        }
+        FlightEvents.RenderEvent event = new FlightEvents.RenderEvent();
+        event.begin();
+        long start = System.nanoTime();
+        paintBoard(g);
+        PAINT_TIME.recordSince(start);
+        if (event.shouldCommit()) {
+            event.phase = "paint board";
+            event.commit();
+        }
+    }
+
+    private void paintBoard(Graphics g) {
+        g.setColor(getBackground() != null ? getBackground() : Color.LIGHT_GRAY);
+        g.fillRect(0, 0, getWidth(), getHeight());
+
+        int cell = getCellSize();
+        if (cell <= 0) {
+            return;
+        }
+        int size = cell - 2 * PIECE_MARGIN;
+        if (size != spriteSize) {
+            sprites.clearScaled();
+            spriteSize = size;
+        }
+
+        Rectangle clip = g.getClipBounds();
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                Rectangle bounds = getCellBounds(row, col, cell);
+                if (clip != null && !clip.intersects(bounds)) {
+                    continue;
+                }
+                int square = ChessBoard.square(row, col);
+                if (states[square] == SELECTED) {
+                    g.setColor(SELECTED_COLOR);
+                } else if (states[square] == TARGET) {
+                    g.setColor(HIGHLIGHT_COLOR);
+                } else {
+                    g.setColor((row + col) % 2 == 0 ? LIGHT_COLOR : DARK_COLOR);
+                }
+                g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+                g.setColor(Color.BLACK);
+                g.drawRect(bounds.x, bounds.y, bounds.width - 1, bounds.height - 1);
+
+                if (imagePaths[square] != null) {
+                    BufferedImage sprite = sprites.get(imagePaths[square], size, flipped);
+                    if (sprite != null) {
+                        g.drawImage(sprite, bounds.x + PIECE_MARGIN, bounds.y + PIECE_MARGIN, null);
+                    }
+                }
+            }
+        }
+    }
+
+    private void repaintCell(int row, int col) {
+        int cell = getCellSize();
+        if (cell > 0) {
+            repaint(getCellBounds(row, col, cell));
+        }
+    }
+
+    // Screen rectangle of a board square, taking the flip into account
+    private Rectangle getCellBounds(int row, int col, int cell) {
+        int screenRow = flipped ? ROWS - 1 - row : row;
+        int screenCol = flipped ? COLS - 1 - col : col;
+        return new Rectangle(getOffsetX(cell) + screenCol * cell, getOffsetY(cell) + screenRow * cell, cell, cell);
+    }
+
+    // Largest square cell that fits, with the board centered in the component
+    private int getCellSize() {
+        return Math.min(getWidth() / COLS, getHeight() / ROWS);
+    }
+
+    private int getOffsetX(int cell) {
+        return (getWidth() - COLS * cell) / 2;
+    }
+
+    private int getOffsetY(int cell) {
+        return (getHeight() - ROWS * cell) / 2;
+    }
+}
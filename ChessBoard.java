@@ -5,20 +5,58 @@
 
 package model;
 
+import util.FlightEvents;
+import util.Metrics;
+
 /**
- * Manages the core board operations and piece placement
+ * Manages the core board operations and piece placement.
+ * The position is stored as 40-bit occupancy masks (square = row * COLS + col),
+ * one per color and one per piece type, plus a mask of Rams that have reversed.
+ * No Piece objects are kept: getPiece hands out the shared flyweight for the
+ * type and color found in the masks, so copying a board copies a few longs.
+ * A Zobrist hash of the pieces and Ram directions is updated on every change,
+ * together with the hash the board would have after the next Tor/Xor transform,
+ * so a transform only swaps the two. The piece-square sums used by Evaluation
+ * are kept the same way.
  * @author Aleesya
  */
 public class ChessBoard {
-    private static final int ROWS = 8;
-    private static final int COLS = 5;
-    private Piece[][] board;
+    public static final int ROWS = 8;
+    public static final int COLS = 5;
+    public static final int SQUARES = ROWS * COLS;
+    public static final long ALL_SQUARES = (1L << SQUARES) - 1;
+
+    private static final Metrics.Histogram VALID_MOVE_TIME = Metrics.histogram("board.isValidMove");
+    private static final Metrics.Histogram TRANSFORM_TIME = Metrics.histogram("board.transformPieces");
+
+    private static final PieceType[] TYPES = PieceType.values();
+    private static final PieceColor[] COLORS = PieceColor.values();
+
+    private final long[] colorMasks = new long[PieceColor.values().length];
+    private final long[] typeMasks = new long[PieceType.values().length];
+    private long ramReversed;
+    private long hash;
+    private long transformedHash;
+    private int pieceScore;
+    private int transformedPieceScore;
 
     public ChessBoard() {
-        board = new Piece[ROWS][COLS];
         initializeBoard();
     }
 
+    /**
+     * Copies another board
+     */
+    public ChessBoard(ChessBoard other) {
+        System.arraycopy(other.colorMasks, 0, colorMasks, 0, colorMasks.length);
+        System.arraycopy(other.typeMasks, 0, typeMasks, 0, typeMasks.length);
+        ramReversed = other.ramReversed;
+        hash = other.hash;
+        transformedHash = other.transformedHash;
+        pieceScore = other.pieceScore;
+        transformedPieceScore = other.transformedPieceScore;
+    }
+
     /**
      * Initializes the chess board with starting piece positions
      * @author Seow Rou
@@ -26,23 +64,23 @@ public class ChessBoard {
     private void initializeBoard() {
         // Initialize the board with pieces
         // Red pieces
-        board[0][0] = new TorPiece(PieceColor.RED);
-        board[0][1] = new BizPiece(PieceColor.RED);
-        board[0][2] = new SauPiece(PieceColor.RED);
-        board[0][3] = new BizPiece(PieceColor.RED);
-        board[0][4] = new XorPiece(PieceColor.RED);
+        placePiece(0, 0, Piece.of(PieceType.TOR, PieceColor.RED));
+        placePiece(0, 1, Piece.of(PieceType.BIZ, PieceColor.RED));
+        placePiece(0, 2, Piece.of(PieceType.SAU, PieceColor.RED));
+        placePiece(0, 3, Piece.of(PieceType.BIZ, PieceColor.RED));
+        placePiece(0, 4, Piece.of(PieceType.XOR, PieceColor.RED));
         for (int col = 0; col < COLS; col++) {
-            board[1][col] = new RamPiece(PieceColor.RED);
+            placePiece(1, col, Piece.of(PieceType.RAM, PieceColor.RED));
         }
 
         // Blue pieces
-        board[7][0] = new XorPiece(PieceColor.BLUE);
-        board[7][1] = new BizPiece(PieceColor.BLUE);
-        board[7][2] = new SauPiece(PieceColor.BLUE);
-        board[7][3] = new BizPiece(PieceColor.BLUE);
-        board[7][4] = new TorPiece(PieceColor.BLUE);
+        placePiece(7, 0, Piece.of(PieceType.XOR, PieceColor.BLUE));
+        placePiece(7, 1, Piece.of(PieceType.BIZ, PieceColor.BLUE));
+        placePiece(7, 2, Piece.of(PieceType.SAU, PieceColor.BLUE));
+        placePiece(7, 3, Piece.of(PieceType.BIZ, PieceColor.BLUE));
+        placePiece(7, 4, Piece.of(PieceType.TOR, PieceColor.BLUE));
         for (int col = 0; col < COLS; col++) {
-            board[6][col] = new RamPiece(PieceColor.BLUE);
+            placePiece(6, col, Piece.of(PieceType.RAM, PieceColor.BLUE));
         }
     }
 
@@ -52,33 +90,152 @@ public class ChessBoard {
      * @return true if any pieces were transformed, false otherwise
      */
     public boolean transformPieces() {
-        boolean transformed = false;
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-                Piece piece = board[row][col];
-                if (piece instanceof TorPiece) {
-                    board[row][col] = new XorPiece(piece.getColor());
-                    transformed = true;
-                } else if (piece instanceof XorPiece) {
-                    board[row][col] = new TorPiece(piece.getColor());
-                    transformed = true;
-                }
-            }
+        if (!Metrics.ENABLED) {
+            return swapTorsAndXors();
+        }
+        FlightEvents.TransformEvent event = new FlightEvents.TransformEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean transformed = swapTorsAndXors();
+        TRANSFORM_TIME.recordSince(start);
+        if (event.shouldCommit()) {
+            event.transformed = transformed;
+            event.commit();
         }
         return transformed;
     }
 
+    private boolean swapTorsAndXors() {
+        long tors = typeMasks[PieceType.TOR.ordinal()];
+        long xors = typeMasks[PieceType.XOR.ordinal()];
+        if ((tors | xors) == 0) {
+            return false;
+        }
+
+        typeMasks[PieceType.TOR.ordinal()] = xors;
+        typeMasks[PieceType.XOR.ordinal()] = tors;
+        long previous = hash;
+        hash = transformedHash;
+        transformedHash = previous;
+        int previousScore = pieceScore;
+        pieceScore = transformedPieceScore;
+        transformedPieceScore = previousScore;
+        return true;
+    }
+
     public Piece getPiece(int row, int col) {
-        if (row >= 0 && row < ROWS && col >= 0 && col < COLS) {
-            return board[row][col];
+        if (isValidPosition(row, col)) {
+            return getPiece(square(row, col));
         }
         return null;
     }
 
+    public Piece getPiece(int square) {
+        PieceColor color = getColorAt(square);
+        return color == null ? null : Piece.of(getTypeAt(square), color);
+    }
+
+    /**
+     * Image for the piece on a square; a Ram that has turned around is drawn flipped
+     */
+    public String getImagePath(int row, int col) {
+        Piece piece = getPiece(row, col);
+        if (piece instanceof RamPiece) {
+            return ((RamPiece) piece).getImagePath(isRamReversed(square(row, col)));
+        }
+        return piece == null ? null : piece.getImagePath();
+    }
+
+    /**
+     * Moves a piece, capturing whatever stands on the target square.
+     * A Ram that reaches the far row reverses direction here.
+     */
     public void movePiece(int fromRow, int fromCol, int toRow, int toCol) {
         if (isValidPosition(fromRow, fromCol) && isValidPosition(toRow, toCol)) {
-            board[toRow][toCol] = board[fromRow][fromCol];
-            board[fromRow][fromCol] = null;
+            makeMove(square(fromRow, fromCol), square(toRow, toCol));
+        }
+    }
+
+    /**
+     * Moves a piece between two squares without validating it.
+     * The caller keeps the returned piece and the Ram flags to undo the move later.
+     * @return the captured piece, or null
+     */
+    public Piece makeMove(int from, int to) {
+        long fromBit = 1L << from;
+        long toBit = 1L << to;
+        int color = (colorMasks[PieceColor.RED.ordinal()] & fromBit) != 0 ? PieceColor.RED.ordinal()
+            : (colorMasks[PieceColor.BLUE.ordinal()] & fromBit) != 0 ? PieceColor.BLUE.ordinal() : -1;
+        if (color < 0) {
+            return null;
+        }
+
+        Piece captured = null;
+        if ((colorMasks[color ^ 1] & toBit) != 0) {
+            int capturedType = typeIndexAt(toBit);
+            captured = Piece.of(TYPES[capturedType], COLORS[color ^ 1]);
+            colorMasks[color ^ 1] &= ~toBit;
+            typeMasks[capturedType] &= ~toBit;
+            updateKeys(color ^ 1, capturedType, to, -1);
+            if ((ramReversed & toBit) != 0) {
+                ramReversed &= ~toBit;
+                updateRamKey(color ^ 1, to, -1);
+            }
+        }
+
+        int type = typeIndexAt(fromBit);
+        colorMasks[color] ^= fromBit | toBit;
+        typeMasks[type] ^= fromBit | toBit;
+        updateKeys(color, type, from, -1);
+        updateKeys(color, type, to, 1);
+
+        if (type == PieceType.RAM.ordinal()) {
+            boolean reversed = (ramReversed & fromBit) != 0;
+            if (reversed) {
+                ramReversed &= ~fromBit;
+                updateRamKey(color, from, -1);
+            }
+            if (reversed || to / COLS == endRow(COLORS[color])) {
+                ramReversed |= toBit;
+                updateRamKey(color, to, 1);
+            }
+        }
+        return captured;
+    }
+
+    /**
+     * Reverts makeMove, putting back the moved piece's direction and the captured piece
+     */
+    public void unmakeMove(int from, int to, Piece captured, boolean moverReversed, boolean capturedReversed) {
+        long fromBit = 1L << from;
+        long toBit = 1L << to;
+        int color = (colorMasks[PieceColor.RED.ordinal()] & toBit) != 0
+            ? PieceColor.RED.ordinal() : PieceColor.BLUE.ordinal();
+        int type = typeIndexAt(toBit);
+
+        colorMasks[color] ^= fromBit | toBit;
+        typeMasks[type] ^= fromBit | toBit;
+        updateKeys(color, type, to, -1);
+        updateKeys(color, type, from, 1);
+        if ((ramReversed & toBit) != 0) {
+            ramReversed &= ~toBit;
+            updateRamKey(color, to, -1);
+        }
+        if (moverReversed) {
+            ramReversed |= fromBit;
+            updateRamKey(color, from, 1);
+        }
+
+        if (captured != null) {
+            int capturedColor = captured.getColor().ordinal();
+            int capturedType = captured.getType().ordinal();
+            colorMasks[capturedColor] |= toBit;
+            typeMasks[capturedType] |= toBit;
+            updateKeys(capturedColor, capturedType, to, 1);
+            if (capturedReversed) {
+                ramReversed |= toBit;
+                updateRamKey(capturedColor, to, 1);
+            }
         }
     }
 
@@ -87,16 +244,53 @@ public class ChessBoard {
      * @author Aleesya, Zeti
      */
     public boolean isValidMove(int fromRow, int fromCol, int toRow, int toCol) {
+        // Too quick for a Flight Recorder event of its own; movePiece's event covers it
+        if (!Metrics.ENABLED) {
+            return checkMove(fromRow, fromCol, toRow, toCol);
+        }
+        long start = System.nanoTime();
+        boolean valid = checkMove(fromRow, fromCol, toRow, toCol);
+        VALID_MOVE_TIME.recordSince(start);
+        return valid;
+    }
+
+    private boolean checkMove(int fromRow, int fromCol, int toRow, int toCol) {
         if (!isValidPosition(fromRow, fromCol) || !isValidPosition(toRow, toCol)) {
             return false;
         }
 
-        Piece piece = board[fromRow][fromCol];
-        if (piece == null) {
-            return false;
+        return (getTargets(square(fromRow, fromCol)) & (1L << square(toRow, toCol))) != 0;
+    }
+
+    /**
+     * Every square the piece on the given square may move to, as a mask
+     * @return 0 for an empty square
+     */
+    public long getTargets(int square) {
+        long bit = 1L << square;
+        PieceColor color;
+        if ((colorMasks[PieceColor.RED.ordinal()] & bit) != 0) {
+            color = PieceColor.RED;
+        } else if ((colorMasks[PieceColor.BLUE.ordinal()] & bit) != 0) {
+            color = PieceColor.BLUE;
+        } else {
+            return 0;
         }
+        long own = colorMasks[color.ordinal()];
 
-        return piece.canMove(this, fromRow, fromCol, toRow, toCol);
+        if ((typeMasks[PieceType.RAM.ordinal()] & bit) != 0) {
+            return Attacks.ram(color, (ramReversed & bit) != 0, square) & ~own;
+        }
+        if ((typeMasks[PieceType.BIZ.ordinal()] & bit) != 0) {
+            return Attacks.biz(square) & ~own;
+        }
+        if ((typeMasks[PieceType.SAU.ordinal()] & bit) != 0) {
+            return Attacks.sau(square) & ~own;
+        }
+        if ((typeMasks[PieceType.TOR.ordinal()] & bit) != 0) {
+            return Attacks.tor(square, getOccupied()) & ~own;
+        }
+        return Attacks.xor(square, getOccupied()) & ~own;
     }
 
     private boolean isValidPosition(int row, int col) {
@@ -104,6 +298,144 @@ public class ChessBoard {
     }
 
     public void placePiece(int row, int col, Piece piece) {
-        board[row][col] = piece;
+        int square = square(row, col);
+        removePiece(square);
+        if (piece == null) {
+            return;
+        }
+
+        long bit = 1L << square;
+        colorMasks[piece.getColor().ordinal()] |= bit;
+        typeMasks[piece.getType().ordinal()] |= bit;
+        updateKeys(piece.getColor().ordinal(), piece.getType().ordinal(), square, 1);
+    }
+
+    /**
+     * Sets whether the Ram on a square has already turned around, e.g. when loading a game
+     */
+    public void setRamReversed(int row, int col, boolean reversed) {
+        int square = square(row, col);
+        long bit = 1L << square;
+        if ((typeMasks[PieceType.RAM.ordinal()] & bit) == 0 || reversed == ((ramReversed & bit) != 0)) {
+            return;
+        }
+        ramReversed ^= bit;
+        updateRamKey(getColorAt(square).ordinal(), square, reversed ? 1 : -1);
+    }
+
+    // Clears a square from every mask, the hash and the piece-square sums
+    private void removePiece(int square) {
+        long bit = 1L << square;
+        PieceColor color = getColorAt(square);
+        if (color == null) {
+            return;
+        }
+
+        int type = typeIndexAt(bit);
+        colorMasks[color.ordinal()] &= ~bit;
+        typeMasks[type] &= ~bit;
+        updateKeys(color.ordinal(), type, square, -1);
+        if ((ramReversed & bit) != 0) {
+            ramReversed &= ~bit;
+            updateRamKey(color.ordinal(), square, -1);
+        }
+    }
+
+    // Adds (sign 1) or removes (sign -1) a piece from the hashes and sums
+    private void updateKeys(int color, int type, int square, int sign) {
+        hash ^= Zobrist.piece(color, type, square);
+        transformedHash ^= Zobrist.pieceTransformed(color, type, square);
+        pieceScore += sign * Evaluation.piece(color, type, square);
+        transformedPieceScore += sign * Evaluation.pieceTransformed(color, type, square);
+    }
+
+    private void updateRamKey(int color, int square, int sign) {
+        hash ^= Zobrist.ramReversed(square);
+        transformedHash ^= Zobrist.ramReversed(square);
+        pieceScore += sign * Evaluation.ramReversed(color, square);
+        transformedPieceScore += sign * Evaluation.ramReversed(color, square);
+    }
+
+    public static int square(int row, int col) {
+        return row * COLS + col;
+    }
+
+    // Row a Ram of the given color has to reach before it turns around
+    public static int endRow(PieceColor color) {
+        return color == PieceColor.RED ? ROWS - 1 : 0;
+    }
+
+    public long getColorMask(PieceColor color) {
+        return colorMasks[color.ordinal()];
+    }
+
+    public long getTypeMask(PieceType type) {
+        return typeMasks[type.ordinal()];
+    }
+
+    /**
+     * Type of the piece on a square straight from the masks
+     * @return null for an empty square
+     */
+    public PieceType getTypeAt(int square) {
+        int type = typeIndexAt(1L << square);
+        return type < 0 ? null : TYPES[type];
+    }
+
+    /**
+     * @return null for an empty square
+     */
+    public PieceColor getColorAt(int square) {
+        long bit = 1L << square;
+        if ((colorMasks[PieceColor.RED.ordinal()] & bit) != 0) {
+            return PieceColor.RED;
+        }
+        if ((colorMasks[PieceColor.BLUE.ordinal()] & bit) != 0) {
+            return PieceColor.BLUE;
+        }
+        return null;
+    }
+
+    private int typeIndexAt(long bit) {
+        for (int type = 0; type < TYPES.length; type++) {
+            if ((typeMasks[type] & bit) != 0) {
+                return type;
+            }
+        }
+        return -1;
+    }
+
+    public long getOccupied() {
+        return colorMasks[0] | colorMasks[1];
+    }
+
+    public boolean isRamReversed(int square) {
+        return (ramReversed & (1L << square)) != 0;
+    }
+
+    public long getRamReversedMask() {
+        return ramReversed;
+    }
+
+    /**
+     * Zobrist hash of the pieces and Ram directions; side to move and
+     * transform phase are mixed in by GameManager.getPositionHash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Sum of Evaluation's piece-square values, positive for Red
+     */
+    public int getPieceScore() {
+        return pieceScore;
+    }
+
+    /**
+     * The piece score the board will have after the next Tor/Xor transform
+     */
+    public int getTransformedPieceScore() {
+        return transformedPieceScore;
     }
-}
\ No newline at end of file
+}
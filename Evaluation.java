@@ -0,0 +1,151 @@
+/**
+ * Static evaluation kept up to date by the board
+ */
+
+package model;
+
+import static model.ChessBoard.COLS;
+import static model.ChessBoard.ROWS;
+import static model.ChessBoard.SQUARES;
+
+/**
+ * Piece-square values for every piece, summed incrementally by ChessBoard as
+ * pieces are placed, moved, captured and Rams turn around, in the same way as
+ * its Zobrist hash. Sums are kept from Red's point of view, Blue's pieces
+ * counting negative. The board also keeps the sum it would have after the
+ * next Tor/Xor transform, so a transform only swaps the two, and evaluate
+ * blends them by how soon the transform comes: one move before it a Tor is
+ * already valued mostly as the Xor it will become.
+ *
+ * Each table entry is material plus placement: Rams gain per row advanced and
+ * lose a little once reversed and walking home, Biz, Tor and Xor gain for the
+ * squares they reach from there on an empty board, and a Sau prefers its home
+ * rows. Sau safety is the only term not kept in the sums; it is a popcount of
+ * the pieces around each Sau, so evaluation stays a handful of operations.
+ */
+public final class Evaluation {
+    public static final int RAM_VALUE = 100;
+    public static final int BIZ_VALUE = 300;
+    public static final int TOR_VALUE = 500;
+    public static final int XOR_VALUE = 330;
+
+    private static final int RAM_STEP_BONUS = 6;
+    private static final int RAM_CENTRE_BONUS = 4;
+    private static final int RAM_REVERSED_PENALTY = 15;
+    private static final int BIZ_MOBILITY = 5;
+    private static final int TOR_MOBILITY = 2;
+    private static final int XOR_MOBILITY = 4;
+    private static final int SAU_STEP_PENALTY = 8;
+    private static final int SAU_ATTACKER_PENALTY = 14;
+    private static final int SAU_SHELTER_BONUS = 5;
+
+    private static final int TYPES = PieceType.values().length;
+    // Signed value of a piece by color, type and square
+    private static final int[][][] PIECE = new int[2][TYPES][SQUARES];
+    // Same as PIECE with Tor and Xor swapped, for the board's transformed sum
+    private static final int[][][] PIECE_TRANSFORMED = new int[2][TYPES][SQUARES];
+    // Signed change in a Ram's value when it turns around on a square
+    private static final int[][] RAM_REVERSED = new int[2][SQUARES];
+    // Squares within two steps of each square, where enemy pieces threaten a Sau
+    private static final long[] SAU_ZONE = new long[SQUARES];
+
+    static {
+        for (PieceColor color : PieceColor.values()) {
+            int c = color.ordinal();
+            int sign = color == PieceColor.RED ? 1 : -1;
+            for (int square = 0; square < SQUARES; square++) {
+                int col = square % COLS;
+                // Rows counted from this color's home side
+                int rank = color == PieceColor.RED ? square / COLS : ROWS - 1 - square / COLS;
+                int centre = 2 - Math.abs(col - COLS / 2);
+
+                PIECE[c][PieceType.RAM.ordinal()][square] = sign * (RAM_VALUE
+                    + Math.max(rank - 1, 0) * RAM_STEP_BONUS + centre * RAM_CENTRE_BONUS);
+                PIECE[c][PieceType.BIZ.ordinal()][square] = sign * (BIZ_VALUE
+                    + Long.bitCount(Attacks.biz(square)) * BIZ_MOBILITY);
+                PIECE[c][PieceType.SAU.ordinal()][square] = -sign * rank * SAU_STEP_PENALTY;
+                PIECE[c][PieceType.TOR.ordinal()][square] = sign * (TOR_VALUE
+                    + Long.bitCount(Attacks.tor(square, 0)) * TOR_MOBILITY);
+                PIECE[c][PieceType.XOR.ordinal()][square] = sign * (XOR_VALUE
+                    + Long.bitCount(Attacks.xor(square, 0)) * XOR_MOBILITY);
+
+                // A reversed Ram keeps its material and centre value but no longer advances
+                RAM_REVERSED[c][square] = sign * (-Math.max(rank - 1, 0) * RAM_STEP_BONUS - RAM_REVERSED_PENALTY);
+            }
+            for (int type = 0; type < TYPES; type++) {
+                PIECE_TRANSFORMED[c][type] = PIECE[c][transformed(type)];
+            }
+        }
+
+        for (int square = 0; square < SQUARES; square++) {
+            int row = square / COLS;
+            int col = square % COLS;
+            for (int other = 0; other < SQUARES; other++) {
+                if (other != square && Math.abs(other / COLS - row) <= 2 && Math.abs(other % COLS - col) <= 2) {
+                    SAU_ZONE[square] |= 1L << other;
+                }
+            }
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    /**
+     * Signed value of a piece, positive for Red
+     */
+    public static int piece(int color, int type, int square) {
+        return PIECE[color][type][square];
+    }
+
+    /**
+     * Value of the piece this one turns into at the next transform
+     */
+    public static int pieceTransformed(int color, int type, int square) {
+        return PIECE_TRANSFORMED[color][type][square];
+    }
+
+    /**
+     * Change in a Ram's value for standing reversed on the square
+     */
+    public static int ramReversed(int color, int square) {
+        return RAM_REVERSED[color][square];
+    }
+
+    /**
+     * @return score from the side to move's point of view
+     */
+    public static int evaluate(GameManager game) {
+        return evaluate(game.getBoard(), game.getCurrentPlayer(), game.getMoveCount());
+    }
+
+    public static int evaluate(ChessBoard board, PieceColor sideToMove, int moveCount) {
+        int untilTransform = 4 - moveCount % 4;
+        int score = (board.getPieceScore() * untilTransform
+            + board.getTransformedPieceScore() * (4 - untilTransform)) / 4;
+        score += sauSafety(board, PieceColor.RED) - sauSafety(board, PieceColor.BLUE);
+        return sideToMove == PieceColor.RED ? score : -score;
+    }
+
+    private static int sauSafety(ChessBoard board, PieceColor color) {
+        long own = board.getColorMask(color);
+        long sau = board.getTypeMask(PieceType.SAU) & own;
+        if (sau == 0) {
+            return 0;
+        }
+        int square = Long.numberOfTrailingZeros(sau);
+        long enemy = board.getColorMask(color == PieceColor.RED ? PieceColor.BLUE : PieceColor.RED);
+        return Long.bitCount(Attacks.sau(square) & own) * SAU_SHELTER_BONUS
+            - Long.bitCount(SAU_ZONE[square] & enemy) * SAU_ATTACKER_PENALTY;
+    }
+
+    private static int transformed(int type) {
+        if (type == PieceType.TOR.ordinal()) {
+            return PieceType.XOR.ordinal();
+        }
+        if (type == PieceType.XOR.ordinal()) {
+            return PieceType.TOR.ordinal();
+        }
+        return type;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * JDK Flight Recorder events for the game
+ */
+
+package util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Custom events that show up in a recording next to GC, I/O and thread
+ * events, so a stall in the window can be attributed to rule checking,
+ * painting, image loading, audio or the engine. They are only created when
+ * Metrics.ENABLED is set, and then only written while a recording has them
+ * enabled, e.g.
+ *
+ *   java -Dkwazam.metrics=true -XX:StartFlightRecording=filename=kwazam.jfr KwazamChessMain
+ *
+ * Events that fire many times per second carry no stack trace, and the
+ * Transform event, which the engine fires throughout a search, is off
+ * unless the recording settings turn it on.
+ */
+public final class FlightEvents {
+    private FlightEvents() {
+    }
+
+    @Name("kwazam.Move")
+    @Label("Move")
+    @Category({"Kwazam", "Game"})
+    @Description("A move attempted through GameManager.movePiece")
+    @StackTrace(false)
+    public static final class MoveEvent extends Event {
+        @Label("From")
+        public String from;
+
+        @Label("To")
+        public String to;
+
+        @Label("Legal")
+        public boolean legal;
+
+        @Label("Move Count")
+        public int moveCount;
+    }
+
+    @Name("kwazam.Transform")
+    @Label("Transform")
+    @Category({"Kwazam", "Game"})
+    @Description("Tor and Xor pieces swapping on the board")
+    @StackTrace(false)
+    @Enabled(false)
+    public static final class TransformEvent extends Event {
+        @Label("Transformed")
+        public boolean transformed;
+    }
+
+    @Name("kwazam.Render")
+    @Label("Render")
+    @Category({"Kwazam", "View"})
+    @Description("Building or updating the board view")
+    @StackTrace(false)
+    public static final class RenderEvent extends Event {
+        @Label("Phase")
+        public String phase;
+    }
+
+    @Name("kwazam.ImageLoad")
+    @Label("Image Load")
+    @Category({"Kwazam", "View"})
+    public static final class ImageLoadEvent extends Event {
+        @Label("Image")
+        public String image;
+
+        @Label("Found")
+        public boolean found;
+    }
+
+    @Name("kwazam.Sound")
+    @Label("Sound")
+    @Category({"Kwazam", "Audio"})
+    @Description("Loading an effect or starting a clip on the sound thread")
+    @StackTrace(false)
+    public static final class SoundEvent extends Event {
+        @Label("Effect")
+        public String effect;
+
+        @Label("Action")
+        public String action;
+    }
+
+    @Name("kwazam.GameFile")
+    @Label("Game File")
+    @Category({"Kwazam", "Game"})
+    @Description("Saving or loading a game")
+    public static final class GameFileEvent extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Save")
+        public boolean save;
+
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("kwazam.Search")
+    @Label("Search")
+    @Category({"Kwazam", "Engine"})
+    @Description("One engine search, from a single thread")
+    @StackTrace(false)
+    public static final class SearchEvent extends Event {
+        @Label("Depth")
+        public int depth;
+
+        @Label("Nodes")
+        public long nodes;
+
+        @Label("Nodes per Second")
+        public long nodesPerSecond;
+
+        @Label("Score")
+        public int score;
+
+        @Label("Best Move")
+        public String bestMove;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Append-only archive of many games in one segment file
+ */
+
+package archive;
+
+import model.GameManager;
+import model.MoveGenerator;
+import model.PieceColor;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Shared layout of a game archive, written by GameArchiveWriter and read by GameArchiveReader.
+ *
+ * An archive "games" is two files:
+ *   games.kwa  segment: "KWZA" + version, then one record per game
+ *   games.kwi  index:   "KWZI" + version, then one 8-byte segment offset per game id
+ *
+ * A record is varint ply count, one result byte (0 draw, 1 Blue won, 2 Red won)
+ * and one varint per move holding its ordinal in MoveGenerator's output for that
+ * position. Every game starts from the initial setup, so a move almost always
+ * fits in one byte; the price is that reading replays the game.
+ */
+public final class GameArchive {
+    static final int SEGMENT_MAGIC = 0x4B575A41;
+    static final int INDEX_MAGIC = 0x4B575A49;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final String SEGMENT_EXTENSION = ".kwa";
+    static final String INDEX_EXTENSION = ".kwi";
+
+    /** Longest game a record may hold; bounds the record size for the reader's mapped windows */
+    public static final int MAX_PLIES = 65535;
+
+    public static final int DRAW = 0;
+    public static final int BLUE_WON = 1;
+    public static final int RED_WON = 2;
+
+    private GameArchive() {
+    }
+
+    static Path segmentPath(Path base) {
+        return Paths.get(base + SEGMENT_EXTENSION);
+    }
+
+    static Path indexPath(Path base) {
+        return Paths.get(base + INDEX_EXTENSION);
+    }
+
+    public static int result(PieceColor winner) {
+        if (winner == null) {
+            return DRAW;
+        }
+        return winner == PieceColor.BLUE ? BLUE_WON : RED_WON;
+    }
+
+    public static PieceColor winner(int result) {
+        return result == BLUE_WON ? PieceColor.BLUE : result == RED_WON ? PieceColor.RED : null;
+    }
+
+    /**
+     * Position of a move in the generated move list, or -1 if it is not legal here
+     */
+    static int ordinal(GameManager game, int move, int[] buffer) {
+        int count = MoveGenerator.generate(game.getBoard(), game.getCurrentPlayer(), buffer);
+        for (int i = 0; i < count; i++) {
+            if (buffer[i] == move) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Memory-mapped random access to an archive of games
+ */
+
+package archive;
+
+import model.GameManager;
+import model.MoveGenerator;
+import model.PieceColor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads an archive written by GameArchiveWriter through read-only memory maps,
+ * so scanning touches the page cache rather than copying records into the heap.
+ * The segment is mapped in windows of WINDOW bytes that overlap by the largest
+ * possible record, so every record lies whole inside the window of its start offset.
+ * Sees the games indexed when it was opened. Reads use absolute positions only,
+ * so one reader can be shared between threads.
+ *
+ * Usage: java archive.GameArchiveReader archiveBase
+ */
+public class GameArchiveReader implements Closeable {
+    private static final long WINDOW = 1L << 30;
+    private static final long MAX_RECORD = 8 + 3L * GameArchive.MAX_PLIES;
+
+    private final FileChannel segment;
+    private final LongBuffer offsets;
+    private final MappedByteBuffer[] windows;
+    private final long games;
+    private final ThreadLocal<GameManager> scratch = ThreadLocal.withInitial(GameManager::new);
+    private final ThreadLocal<int[]> generated = ThreadLocal.withInitial(() -> new int[MoveGenerator.MAX_MOVES]);
+
+    public GameArchiveReader(Path base) throws IOException {
+        try (FileChannel index = FileChannel.open(GameArchive.indexPath(base), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size());
+            checkHeader(mapped, GameArchive.INDEX_MAGIC);
+            games = (index.size() - GameArchive.HEADER_BYTES) / Long.BYTES;
+            mapped.position(GameArchive.HEADER_BYTES);
+            offsets = mapped.slice().order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+        }
+
+        segment = FileChannel.open(GameArchive.segmentPath(base), StandardOpenOption.READ);
+        long size = segment.size();
+        windows = new MappedByteBuffer[(int) Math.max(1, (size + WINDOW - 1) / WINDOW)];
+        for (int i = 0; i < windows.length; i++) {
+            long start = i * WINDOW;
+            windows[i] = segment.map(FileChannel.MapMode.READ_ONLY, start,
+                Math.min(size - start, WINDOW + MAX_RECORD));
+        }
+        checkHeader(windows[0], GameArchive.SEGMENT_MAGIC);
+    }
+
+    /**
+     * Number of games in the archive; ids run from 0 to size() - 1
+     */
+    public long size() {
+        return games;
+    }
+
+    public int getPlies(long id) {
+        Cursor cursor = cursor(id);
+        return cursor.readVarInt();
+    }
+
+    /**
+     * @return null for a draw
+     */
+    public PieceColor getWinner(long id) {
+        Cursor cursor = cursor(id);
+        cursor.readVarInt();
+        return GameArchive.winner(cursor.readByte());
+    }
+
+    /**
+     * Decodes a game's moves into the buffer by replaying it from the initial setup
+     * @param moves at least getPlies(id) long
+     * @return the number of plies
+     */
+    public int readMoves(long id, int[] moves) throws IOException {
+        return readMoves(id, moves, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decodes only the first plies of a game, e.g. for opening statistics
+     * @return the number of plies decoded, at most maxPlies
+     */
+    public int readMoves(long id, int[] moves, int maxPlies) throws IOException {
+        Cursor cursor = cursor(id);
+        int plies = Math.min(maxPlies, cursor.readVarInt());
+        cursor.readByte();
+
+        GameManager game = scratch.get();
+        int[] buffer = generated.get();
+        int played = 0;
+        try {
+            for (; played < plies; played++) {
+                int count = MoveGenerator.generate(game.getBoard(), game.getCurrentPlayer(), buffer);
+                int ordinal = cursor.readVarInt();
+                if (ordinal >= count || game.isGameEnded()) {
+                    throw new IOException("Corrupt game " + id + " at ply " + played);
+                }
+                moves[played] = buffer[ordinal];
+                game.makeMove(buffer[ordinal]);
+            }
+        } finally {
+            while (played-- > 0) {
+                game.unmakeMove();
+            }
+        }
+        return plies;
+    }
+
+    /**
+     * Decodes a game into a new array
+     */
+    public int[] readMoves(long id) throws IOException {
+        int[] moves = new int[getPlies(id)];
+        readMoves(id, moves);
+        return moves;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment.close();
+    }
+
+    private Cursor cursor(long id) {
+        if (id < 0 || id >= games) {
+            throw new IndexOutOfBoundsException("Game " + id + " of " + games);
+        }
+        long offset = offsets.get((int) id);
+        int window = (int) (offset / WINDOW);
+        return new Cursor(windows[window], (int) (offset - window * WINDOW));
+    }
+
+    /**
+     * Decodes every game and prints results, lengths and decode throughput
+     */
+    public static void main(String[] args) throws IOException {
+        try (GameArchiveReader reader = new GameArchiveReader(Paths.get(args[0]))) {
+            long[] wins = new long[3];
+            long plies = 0;
+            int[] moves = new int[GameArchive.MAX_PLIES];
+            long start = System.nanoTime();
+            for (long id = 0; id < reader.size(); id++) {
+                plies += reader.readMoves(id, moves);
+                wins[GameArchive.result(reader.getWinner(id))]++;
+            }
+            long nanos = Math.max(1, System.nanoTime() - start);
+
+            System.out.printf("games %d  blue %d  red %d  draws %d%n", reader.size(),
+                wins[GameArchive.BLUE_WON], wins[GameArchive.RED_WON], wins[GameArchive.DRAW]);
+            if (reader.size() > 0) {
+                System.out.printf("average length %.1f plies  segment %.2f bytes/ply%n",
+                    (double) plies / reader.size(), (double) reader.segment.size() / Math.max(1, plies));
+            }
+            System.out.printf("decoded in %.1f ms  %.0f games/s  %.0f plies/s%n", nanos / 1e6,
+                reader.size() * 1e9 / nanos, plies * 1e9 / nanos);
+        }
+    }
+
+    private static void checkHeader(MappedByteBuffer buffer, int magic) throws IOException {
+        if (buffer.limit() < GameArchive.HEADER_BYTES || buffer.getInt(0) != magic) {
+            throw new IOException("Not a Kwazam game archive");
+        }
+        int version = buffer.getInt(4);
+        if (version != GameArchive.VERSION) {
+            throw new IOException("Unsupported archive version " + version);
+        }
+    }
+
+    /**
+     * Read position inside one mapped window
+     */
+    private static final class Cursor {
+        private final MappedByteBuffer buffer;
+        private int position;
+
+        Cursor(MappedByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int readByte() {
+            return buffer.get(position++) & 0xFF;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
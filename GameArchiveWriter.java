@@ -0,0 +1,134 @@
+/**
+ * Appends games to an archive
+ */
+
+package archive;
+
+import model.GameManager;
+import model.MoveGenerator;
+import model.PieceColor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends game records to an archive (see GameArchive), creating it if needed.
+ * The record goes to the segment before its offset goes to the index, so a crash
+ * can leave an unreferenced tail but never an index entry without its game.
+ * Safe to share between threads; encoding happens outside the lock.
+ */
+public class GameArchiveWriter implements Closeable {
+    private final FileChannel segment;
+    private final FileChannel index;
+    private final ByteBuffer offsetBuffer = ByteBuffer.allocate(Long.BYTES);
+    private long segmentEnd;
+    private long games;
+
+    public GameArchiveWriter(Path base) throws IOException {
+        segment = FileChannel.open(GameArchive.segmentPath(base),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(GameArchive.indexPath(base),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (segment.size() == 0) {
+            writeHeader(segment, GameArchive.SEGMENT_MAGIC);
+            writeHeader(index, GameArchive.INDEX_MAGIC);
+        } else {
+            checkHeader(segment, GameArchive.SEGMENT_MAGIC);
+            checkHeader(index, GameArchive.INDEX_MAGIC);
+        }
+        games = (index.size() - GameArchive.HEADER_BYTES) / Long.BYTES;
+        segmentEnd = segment.size();
+        index.position(GameArchive.HEADER_BYTES + games * Long.BYTES);
+    }
+
+    /**
+     * Appends a game played from the initial setup
+     * @param winner null for a draw
+     * @return the new game's id
+     * @throws IllegalArgumentException if a move is not legal in the replayed game
+     */
+    public long append(int[] moves, int plies, PieceColor winner) throws IOException {
+        if (plies > GameArchive.MAX_PLIES) {
+            throw new IllegalArgumentException("Game too long: " + plies + " plies");
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(6 + plies * 2);
+        putVarInt(record, plies);
+        record.put((byte) GameArchive.result(winner));
+
+        GameManager game = new GameManager();
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        for (int i = 0; i < plies; i++) {
+            int ordinal = GameArchive.ordinal(game, moves[i], buffer);
+            if (ordinal < 0 || game.isGameEnded()) {
+                throw new IllegalArgumentException("Illegal move at ply " + i);
+            }
+            putVarInt(record, ordinal);
+            game.makeMove(moves[i]);
+        }
+        record.flip();
+
+        synchronized (this) {
+            long offset = segmentEnd;
+            while (record.hasRemaining()) {
+                segmentEnd += segment.write(record, segmentEnd);
+            }
+            offsetBuffer.clear();
+            offsetBuffer.putLong(offset).flip();
+            while (offsetBuffer.hasRemaining()) {
+                index.write(offsetBuffer);
+            }
+            return games++;
+        }
+    }
+
+    public synchronized long size() {
+        return games;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            segment.force(false);
+            index.force(false);
+        } finally {
+            segment.close();
+            index.close();
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, int magic) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(GameArchive.HEADER_BYTES);
+        header.putInt(magic).putInt(GameArchive.VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private static void checkHeader(FileChannel channel, int magic) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(GameArchive.HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+        }
+        header.flip();
+        if (header.remaining() < GameArchive.HEADER_BYTES || header.getInt() != magic) {
+            throw new IOException("Not a Kwazam game archive");
+        }
+        int version = header.getInt();
+        if (version != GameArchive.VERSION) {
+            throw new IOException("Unsupported archive version " + version);
+        }
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
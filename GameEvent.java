@@ -0,0 +1,55 @@
+/**
+ * Notification of something that happened in a game
+ */
+
+package model;
+
+/**
+ * One event published by GameManager for a move played by a player.
+ * A move always produces MOVED, then CAPTURED if it took a piece,
+ * then either GAME_OVER or TRANSFORMED. Every event of a move carries
+ * the same packed history record (see Move), so listeners can render
+ * or inspect it without asking the game.
+ */
+public final class GameEvent {
+    public enum Type {
+        MOVED, CAPTURED, TRANSFORMED, GAME_OVER
+    }
+
+    private final Type type;
+    private final int record;
+    private final int moveCount;
+
+    public GameEvent(Type type, int record, int moveCount) {
+        this.type = type;
+        this.record = record;
+        this.moveCount = moveCount;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Packed history record of the move (see Move)
+     */
+    public int getRecord() {
+        return record;
+    }
+
+    public PieceColor getMover() {
+        return Move.mover(record);
+    }
+
+    /**
+     * Number of moves in the game after this one
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + Move.toString(record) + " (move " + moveCount + ")";
+    }
+}
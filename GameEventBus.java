@@ -0,0 +1,129 @@
+/**
+ * Publishes game events to listeners
+ */
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Delivers GameEvents either synchronously on the publishing thread or
+ * asynchronously in batches on a shared daemon thread, in publication order.
+ * Listeners are kept in a copy-on-write array, so publishing takes no lock,
+ * and callers check hasListeners() first to skip building events nobody hears.
+ */
+public class GameEventBus {
+    private static final GameListener[] NONE = new GameListener[0];
+    private static final int BATCH_SIZE = 64;
+
+    private static ExecutorService dispatcher;
+
+    private final boolean async;
+    private volatile GameListener[] listeners = NONE;
+    private final ConcurrentLinkedQueue<GameEvent> pending;
+    private final AtomicBoolean draining;
+
+    /**
+     * Synchronous bus: listeners run inside publish
+     */
+    public GameEventBus() {
+        this(false);
+    }
+
+    /**
+     * @param async whether listeners run later on the shared event thread
+     */
+    public GameEventBus(boolean async) {
+        this.async = async;
+        pending = async ? new ConcurrentLinkedQueue<>() : null;
+        draining = async ? new AtomicBoolean() : null;
+    }
+
+    public synchronized void subscribe(GameListener listener) {
+        GameListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    public synchronized void unsubscribe(GameListener listener) {
+        List<GameListener> remaining = new ArrayList<>(Arrays.asList(listeners));
+        if (remaining.remove(listener)) {
+            listeners = remaining.isEmpty() ? NONE : remaining.toArray(NONE);
+        }
+    }
+
+    public boolean hasListeners() {
+        return listeners.length != 0;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void publish(GameEvent event) {
+        GameListener[] current = listeners;
+        if (current.length == 0) {
+            return;
+        }
+        if (!async) {
+            deliver(current, event);
+            return;
+        }
+        pending.add(event);
+        if (draining.compareAndSet(false, true)) {
+            getDispatcher().execute(this::drain);
+        }
+    }
+
+    // Delivers queued events in batches until the queue stays empty
+    private void drain() {
+        List<GameEvent> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            GameEvent event;
+            while (batch.size() < BATCH_SIZE && (event = pending.poll()) != null) {
+                batch.add(event);
+            }
+            if (batch.isEmpty()) {
+                draining.set(false);
+                // An event published after the last poll but before the flag was cleared
+                if (pending.isEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            GameListener[] current = listeners;
+            for (GameEvent queued : batch) {
+                deliver(current, queued);
+            }
+            batch.clear();
+        }
+    }
+
+    private static void deliver(GameListener[] current, GameEvent event) {
+        for (GameListener listener : current) {
+            try {
+                listener.onGameEvent(event);
+            } catch (RuntimeException e) {
+                System.err.println("Error in game event listener:");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getDispatcher() {
+        if (dispatcher == null) {
+            dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "game-events");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return dispatcher;
+    }
+}
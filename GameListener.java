@@ -0,0 +1,12 @@
+/**
+ * Receiver of game events
+ */
+
+package model;
+
+/**
+ * Subscribes to a GameEventBus
+ */
+public interface GameListener {
+    void onGameEvent(GameEvent event);
+}
@@ -7,10 +7,23 @@ package model;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import util.SoundPlayer;
+import util.FlightEvents;
+import util.Metrics;
 
 public class GameManager {
+    private static final Metrics.Histogram MOVE_TIME = Metrics.histogram("game.movePiece");
+    private static final Metrics.Histogram SAVE_TIME = Metrics.histogram("game.save");
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("game.load");
+
+    // Flag bits kept per ply on the undo stack
+    private static final int UNDO_MOVER_REVERSED = 1;
+    private static final int UNDO_CAPTURED_REVERSED = 2;
+    private static final int UNDO_TRANSFORMED = 4;
+    private static final int UNDO_GAME_ENDED = 8;
+
     private ChessBoard board;
     private PieceColor currentPlayer;
     private int turnCount;
@@ -18,14 +31,57 @@ public class GameManager {
     private boolean gameEnded;
     private String player1Name;
     private String player2Name;
-    private List<String> moveHistory;
+    // Lines from a loaded save, then one packed Move record per move played since
+    private List<String> loadedHistory;
+    // Changes whenever loadedHistory is replaced, so views can tell without comparing lines
+    private int loadedHistoryVersion;
+    private IntList history;
+    // Changes whenever moves are taken back or the history is replaced; in between it only grows
+    private int historyVersion;
+
+    // Undo stack, one entry per ply made since the start (or the last load)
+    private int[] undoMoves = new int[256];
+    private int[] undoFlags = new int[256];
+    private Piece[] undoCaptured = new Piece[256];
+    private int undoCount;
+    private int[] redoMoves = new int[256];
+    private int redoCount;
+
+    // Position the undo stack starts from (new game or last load), for the binary save
+    private ChessBoard baseBoard;
+    private PieceColor basePlayer;
+    private int baseMoveCount;
+    private boolean baseGameEnded;
+    private int baseHistorySize;
+
+    // Moves played by the players are published here; copies start without listeners
+    private GameEventBus events = new GameEventBus();
 
     public GameManager() {
         board = new ChessBoard();
         currentPlayer = PieceColor.BLUE;
         moveCount = 0;
         gameEnded = false;
-        moveHistory = new ArrayList<>();
+        loadedHistory = new ArrayList<>();
+        history = new IntList();
+        markBasePosition();
+    }
+
+    /**
+     * Copies the current position of another game, e.g. one per search thread.
+     * The copy starts with an empty undo stack.
+     */
+    public GameManager(GameManager other) {
+        board = new ChessBoard(other.board);
+        currentPlayer = other.currentPlayer;
+        turnCount = other.turnCount;
+        moveCount = other.moveCount;
+        gameEnded = other.gameEnded;
+        player1Name = other.player1Name;
+        player2Name = other.player2Name;
+        loadedHistory = new ArrayList<>(other.loadedHistory);
+        history = new IntList(other.history);
+        markBasePosition();
     }
 
     /**
@@ -34,6 +90,25 @@ public class GameManager {
      * @author Aleesya
      */
     public boolean movePiece(int fromRow, int fromCol, int toRow, int toCol) {
+        if (!Metrics.ENABLED) {
+            return tryMove(fromRow, fromCol, toRow, toCol);
+        }
+        FlightEvents.MoveEvent event = new FlightEvents.MoveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean moved = tryMove(fromRow, fromCol, toRow, toCol);
+        MOVE_TIME.recordSince(start);
+        if (event.shouldCommit()) {
+            event.from = Move.squareName(ChessBoard.square(fromRow, fromCol));
+            event.to = Move.squareName(ChessBoard.square(toRow, toCol));
+            event.legal = moved;
+            event.moveCount = moveCount;
+            event.commit();
+        }
+        return moved;
+    }
+
+    private boolean tryMove(int fromRow, int fromCol, int toRow, int toCol) {
         if (gameEnded) {
             return false;
         }
@@ -47,159 +122,358 @@ public class GameManager {
             return false;
         }
 
+        redoCount = 0;
+        return playMove(Move.of(ChessBoard.square(fromRow, fromCol), ChessBoard.square(toRow, toCol)));
+    }
+
+    /**
+     * Plays an already validated move and tells the listeners about it
+     * @author Aleesya
+     */
+    private boolean playMove(int move) {
         try {
-            // Get target piece before move
-            Piece targetPiece = board.getPiece(toRow, toCol);
-
-            // Create move notation
-            String pieceName = getPieceName(piece);
-            StringBuilder moveNotation = new StringBuilder();
-            moveNotation.append(getCurrentPlayerName())
-            .append(" moved ")
-            .append(pieceName)
-            .append(" from ")
-            .append((char)('A' + fromCol))
-            .append(8 - fromRow)
-            .append(" to ")
-            .append((char)('A' + toCol))
-            .append(8 - toRow);
-
-            if (targetPiece != null) {
-                moveNotation.append(" takes ").append(getPieceName(targetPiece));
+            makeMove(move);
+
+            // Nothing is built when nobody listens, e.g. headless games
+            if (events.hasListeners()) {
+                int record = history.get(history.size() - 1);
+                events.publish(new GameEvent(GameEvent.Type.MOVED, record, moveCount));
+                if (Move.capturedType(record) != null) {
+                    events.publish(new GameEvent(GameEvent.Type.CAPTURED, record, moveCount));
+                }
+                if (Move.isGameOver(record)) {
+                    events.publish(new GameEvent(GameEvent.Type.GAME_OVER, record, moveCount));
+                } else if (Move.isTransform(record)) {
+                    events.publish(new GameEvent(GameEvent.Type.TRANSFORMED, record, moveCount));
+                }
             }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error during move execution:");
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-            // Execute the move
-            board.movePiece(fromRow, fromCol, toRow, toCol);
-
-            // Handle RAM piece reaching end of board
-            if (piece instanceof RamPiece) {
-                ((RamPiece) piece).handleMove(toRow);
-            }
+    /**
+     * Applies a move with no validation, notation or sound.
+     * Everything needed to take it back goes on the undo stack and the move's
+     * packed record on the history, neither of which allocates unless it has to grow.
+     */
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        if (undoCount == undoMoves.length) {
+            growUndoStack();
+        }
 
-            moveHistory.add(moveNotation.toString());
-            moveCount++;
+        int flags = board.isRamReversed(from) ? UNDO_MOVER_REVERSED : 0;
+        if (board.isRamReversed(to)) {
+            flags |= UNDO_CAPTURED_REVERSED;
+        }
+        PieceType moved = board.getTypeAt(from);
+        PieceColor mover = currentPlayer;
+        Piece captured = board.makeMove(from, to);
+        moveCount++;
+
+        // Capturing the opponent's Sau ends the game before any transform
+        if (captured instanceof SauPiece && captured.getColor() != currentPlayer) {
+            gameEnded = true;
+            flags |= UNDO_GAME_ENDED;
+        } else if (moveCount % 4 == 0 && board.transformPieces()) {
+            // Transform pieces after every 4 moves
+            flags |= UNDO_TRANSFORMED;
+        }
 
-            // Play appropriate sound
-            if (targetPiece != null) {
-                SoundPlayer.playSound("capture");
-            } else {
-                SoundPlayer.playSound("move");
-            }
+        undoMoves[undoCount] = move;
+        undoFlags[undoCount] = flags;
+        undoCaptured[undoCount] = captured;
+        undoCount++;
+        history.add(Move.record(move, mover, moved, captured == null ? null : captured.getType(),
+            (flags & UNDO_TRANSFORMED) != 0, (flags & UNDO_GAME_ENDED) != 0));
+        switchPlayer();
+    }
 
-            // Check if this move captures the opponent's Sau piece
-            if (targetPiece instanceof SauPiece && targetPiece.getColor() != currentPlayer) {
-                gameEnded = true;
-                String winner = (currentPlayer == PieceColor.BLUE) ? player1Name : player2Name;
-                moveHistory.add("Game Over! " + winner + " wins!");
-                SoundPlayer.playSound("game over");
-                switchPlayer();
-                return true;
-            }
+    /**
+     * Takes back the last makeMove, restoring the board, Ram directions,
+     * transform phase, side to move and game-ended state exactly
+     */
+    public void unmakeMove() {
+        undoCount--;
+        int move = undoMoves[undoCount];
+        int flags = undoFlags[undoCount];
+        Piece captured = undoCaptured[undoCount];
+        undoCaptured[undoCount] = null;
+        history.removeLast();
+        historyVersion++;
+
+        switchPlayer();
+        if ((flags & UNDO_TRANSFORMED) != 0) {
+            board.transformPieces();
+        }
+        if ((flags & UNDO_GAME_ENDED) != 0) {
+            gameEnded = false;
+        }
+        moveCount--;
+        board.unmakeMove(Move.from(move), Move.to(move), captured,
+            (flags & UNDO_MOVER_REVERSED) != 0, (flags & UNDO_CAPTURED_REVERSED) != 0);
+    }
 
-            // Transform pieces after every 4 moves
-            if (moveCount % 4 == 0) {
-                if (board.transformPieces()) {
-                    moveHistory.add("Tor and Xor pieces transformed");
-                    SoundPlayer.playSound("transform");
-                }
-            }
+    /**
+     * Takes back the last move for the players
+     * @return false if there is nothing to undo
+     */
+    public boolean undoMove() {
+        if (undoCount == 0) {
+            return false;
+        }
+        if (redoCount == redoMoves.length) {
+            redoMoves = Arrays.copyOf(redoMoves, redoCount * 2);
+        }
+        redoMoves[redoCount++] = undoMoves[undoCount - 1];
+        unmakeMove();
+        return true;
+    }
 
-            switchPlayer();
-            return true;
-        } catch (Exception e) {
-            System.err.println("Error during move execution:");
-            e.printStackTrace();
+    /**
+     * Replays the last undone move
+     * @return false if there is nothing to redo
+     */
+    public boolean redoMove() {
+        if (redoCount == 0) {
             return false;
         }
+        return playMove(redoMoves[--redoCount]);
+    }
+
+    /**
+     * Bus that receives an event for every move played through movePiece or redoMove.
+     * Moves made with makeMove, as in search, publish nothing.
+     */
+    public GameEventBus getEventBus() {
+        return events;
+    }
+
+    /**
+     * Replaces the bus, e.g. with an asynchronous one; its listeners come with it
+     */
+    public void setEventBus(GameEventBus events) {
+        this.events = events;
     }
 
-    // Creates move notation for game history
-    private String getPieceName(Piece piece) {
-        if (piece instanceof RamPiece) return "Ram";
-        if (piece instanceof BizPiece) return "Biz";
-        if (piece instanceof SauPiece) return "Sau";
-        if (piece instanceof TorPiece) return "Tor";
-        if (piece instanceof XorPiece) return "Xor";
-        return "Unknown";
+    public boolean canUndo() {
+        return undoCount > 0;
     }
 
+    public boolean canRedo() {
+        return redoCount > 0;
+    }
+
+    private void growUndoStack() {
+        int size = undoMoves.length * 2;
+        undoMoves = Arrays.copyOf(undoMoves, size);
+        undoFlags = Arrays.copyOf(undoFlags, size);
+        undoCaptured = Arrays.copyOf(undoCaptured, size);
+    }
+
+    /**
+     * Renders a history record as it is shown to players,
+     * e.g. "Alice moved Tor from A1 to A3 takes Ram"
+     */
+    public String describeMove(int record) {
+        int move = Move.move(record);
+        StringBuilder moveNotation = new StringBuilder();
+        moveNotation.append(getPlayerName(Move.mover(record)))
+        .append(" moved ")
+        .append(getPieceName(Move.movedType(record)))
+        .append(" from ")
+        .append(Move.squareName(Move.from(move)))
+        .append(" to ")
+        .append(Move.squareName(Move.to(move)));
+
+        PieceType captured = Move.capturedType(record);
+        if (captured != null) {
+            moveNotation.append(" takes ").append(getPieceName(captured));
+        }
+        return moveNotation.toString();
+    }
+
+    /**
+     * The history line that follows a move which ended the game or transformed pieces
+     * @return null if the move has no such note
+     */
+    public String describeNote(int record) {
+        if (Move.isGameOver(record)) {
+            return "Game Over! " + getPlayerName(Move.mover(record)) + " wins!";
+        } else if (Move.isTransform(record)) {
+            return "Tor and Xor pieces transformed";
+        }
+        return null;
+    }
+
+    // Adds the history lines of one move: the move, then its note if any
+    private void appendHistoryLines(List<String> lines, int record) {
+        lines.add(describeMove(record));
+        String note = describeNote(record);
+        if (note != null) {
+            lines.add(note);
+        }
+    }
+
+    // Creates piece names for game history
+    private String getPieceName(PieceType type) {
+        switch (type) {
+            case RAM: return "Ram";
+            case BIZ: return "Biz";
+            case SAU: return "Sau";
+            case TOR: return "Tor";
+            case XOR: return "Xor";
+            default: return "Unknown";
+        }
+    }
+
+    /**
+     * Loads a game saved in either format, telling them apart by the binary magic
+     * @author Seow Rou
+     */
     public void loadGame(String filename) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            // Reset the game state first
-            gameEnded = false;
-            moveCount = 0;
-            moveHistory.clear();
+        if (!Metrics.ENABLED) {
+            readGameFile(filename);
+            return;
+        }
+        FlightEvents.GameFileEvent event = new FlightEvents.GameFileEvent();
+        event.begin();
+        long start = System.nanoTime();
+        readGameFile(filename);
+        LOAD_TIME.recordSince(start);
+        commitFileEvent(event, filename, false);
+    }
 
-            // Read basic game info
-            player1Name = reader.readLine();
-            player2Name = reader.readLine();
-            currentPlayer = PieceColor.valueOf(reader.readLine());
-            turnCount = Integer.parseInt(reader.readLine());
+    private void readGameFile(String filename) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(filename))) {
+            in.mark(BinaryGameFormat.MAGIC.length);
+            byte[] header = new byte[BinaryGameFormat.MAGIC.length];
+            int length = in.readNBytes(header, 0, header.length);
+            in.reset();
 
-            // Create clean board
-            board = new ChessBoard();
-            for (int row = 0; row < 8; row++) {
-                for (int col = 0; col < 5; col++) {
-                    board.placePiece(row, col, null);
-                }
+            if (BinaryGameFormat.isBinary(header, length)) {
+                readBinary(in);
+            } else {
+                loadTextGame(new BufferedReader(new InputStreamReader(in)));
             }
+        }
+    }
+
+    // Legacy text format written by saveGame
+    private void loadTextGame(BufferedReader reader) throws IOException {
+        // Reset the game state first
+        gameEnded = false;
+        moveCount = 0;
+        loadedHistory.clear();
+        loadedHistoryVersion++;
+        historyVersion++;
+        history.clear();
+        undoCount = 0;
+        redoCount = 0;
+
+        // Read basic game info
+        player1Name = reader.readLine();
+        player2Name = reader.readLine();
+        currentPlayer = PieceColor.valueOf(reader.readLine());
+        turnCount = Integer.parseInt(reader.readLine());
+
+        // Create clean board
+        board = new ChessBoard();
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 5; col++) {
+                board.placePiece(row, col, null);
+            }
+        }
 
-            String line;
-            boolean readingHistory = false;
+        String line;
+        boolean readingHistory = false;
 
-            while ((line = reader.readLine()) != null) {
-                if (line.equals("HISTORY_START")) {
-                    readingHistory = true;
-                    continue;
-                }
+        while ((line = reader.readLine()) != null) {
+            if (line.equals("HISTORY_START")) {
+                readingHistory = true;
+                continue;
+            }
 
-                if (readingHistory) {
-                    moveHistory.add(line);
-                    if (!line.contains("transformed")) {
-                        moveCount++;
-                    }
-                    if (line.startsWith("Game Over")) {
-                        gameEnded = true;
+            if (readingHistory) {
+                loadedHistory.add(line);
+                if (!line.contains("transformed") && !line.startsWith("Game Over")) {
+                    moveCount++;
+                }
+                if (line.startsWith("Game Over")) {
+                    gameEnded = true;
+                }
+            } else {
+                String[] parts = line.split(",");
+                if (parts.length >= 4) {
+                    int row = Integer.parseInt(parts[0]);
+                    int col = Integer.parseInt(parts[1]);
+                    String pieceType = parts[2];
+                    PieceColor color = PieceColor.valueOf(parts[3]);
+
+                    PieceType type = null;
+                    switch (pieceType) {
+                        case "RamPiece": type = PieceType.RAM; break;
+                        case "TorPiece": type = PieceType.TOR; break;
+                        case "XorPiece": type = PieceType.XOR; break;
+                        case "BizPiece": type = PieceType.BIZ; break;
+                        case "SauPiece": type = PieceType.SAU; break;
                     }
-                } else {
-                    String[] parts = line.split(",");
-                    if (parts.length >= 4) {
-                        int row = Integer.parseInt(parts[0]);
-                        int col = Integer.parseInt(parts[1]);
-                        String pieceType = parts[2];
-                        PieceColor color = PieceColor.valueOf(parts[3]);
-
-                        Piece piece = null;
-                        switch (pieceType) {
-                            case "RamPiece":
-                                RamPiece ramPiece = new RamPiece(color);
-                                if ((color == PieceColor.RED && row == 7) ||
-                                (color == PieceColor.BLUE && row == 0)) {
-                                    ramPiece.setHasReachedEnd(true);
-                                    ramPiece.setMovingForward(false);
-                                }
-                                piece = ramPiece;
-                                break;
-                            case "TorPiece": piece = new TorPiece(color); break;
-                            case "XorPiece": piece = new XorPiece(color); break;
-                            case "BizPiece": piece = new BizPiece(color); break;
-                            case "SauPiece": piece = new SauPiece(color); break;
-                        }
-                        if (piece != null) {
-                            board.placePiece(row, col, piece);
+                    if (type != null) {
+                        board.placePiece(row, col, Piece.of(type, color));
+                        // Older saves have no direction field, so guess from the end row
+                        boolean reversed = parts.length >= 5 ? parts[4].equals("REVERSED")
+                            : row == ChessBoard.endRow(color);
+                        if (type == PieceType.RAM && reversed) {
+                            board.setRamReversed(row, col, true);
                         }
                     }
                 }
             }
         }
+        markBasePosition();
     }
 
     /**
-     * Saves current game state to file
+     * Saves current game state to file, in the binary format for
+     * files ending in .kwz and in the text format otherwise
      * @throws IOException if file cannot be written
      * @author Aleesya
      */
     public void saveGame(String filename) throws IOException {
+        if (!Metrics.ENABLED) {
+            writeGameFile(filename);
+            return;
+        }
+        FlightEvents.GameFileEvent event = new FlightEvents.GameFileEvent();
+        event.begin();
+        long start = System.nanoTime();
+        writeGameFile(filename);
+        SAVE_TIME.recordSince(start);
+        commitFileEvent(event, filename, true);
+    }
+
+    private static void commitFileEvent(FlightEvents.GameFileEvent event, String filename, boolean save) {
+        if (event.shouldCommit()) {
+            event.path = filename;
+            event.save = save;
+            event.bytes = new File(filename).length();
+            event.commit();
+        }
+    }
+
+    private void writeGameFile(String filename) throws IOException {
+        if (filename.endsWith(BinaryGameFormat.EXTENSION)) {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename))) {
+                writeBinary(out);
+            }
+            return;
+        }
+
         try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
             writer.println(player1Name);
             writer.println(player2Name);
@@ -211,20 +485,185 @@ public class GameManager {
                 for (int col = 0; col < 5; col++) {
                     Piece piece = board.getPiece(row, col);
                     if (piece != null) {
-                        writer.printf("%d,%d,%s,%s%n", row, col, 
+                        writer.printf("%d,%d,%s,%s", row, col, 
                             piece.getClass().getSimpleName(), piece.getColor());
+                        if (board.isRamReversed(ChessBoard.square(row, col))) {
+                            writer.print(",REVERSED");
+                        }
+                        writer.println();
                     }
                 }
             }
 
             // Save move history
             writer.println("HISTORY_START");
-            for (String move : moveHistory) {
+            for (String move : getMoveHistory()) {
                 writer.println(move);
             }
         }
     }
 
+    /**
+     * Writes the game in the binary format (see BinaryGameFormat)
+     */
+    public void writeBinary(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.write(BinaryGameFormat.MAGIC);
+        out.writeByte(BinaryGameFormat.VERSION);
+        out.writeUTF(player1Name == null ? "" : player1Name);
+        out.writeUTF(player2Name == null ? "" : player2Name);
+        BinaryGameFormat.writeVarInt(out, turnCount);
+
+        int flags = (basePlayer == PieceColor.RED ? BinaryGameFormat.FLAG_RED_TO_MOVE : 0)
+            | (baseGameEnded ? BinaryGameFormat.FLAG_GAME_ENDED : 0);
+        out.writeByte(flags);
+        BinaryGameFormat.writeVarInt(out, baseMoveCount);
+        BinaryGameFormat.writeBoard(out, baseBoard);
+
+        List<String> baseHistory = new ArrayList<>(loadedHistory);
+        for (int i = 0; i < baseHistorySize; i++) {
+            appendHistoryLines(baseHistory, history.get(i));
+        }
+        BinaryGameFormat.writeVarInt(out, baseHistory.size());
+        for (String line : baseHistory) {
+            out.writeUTF(line);
+        }
+
+        BinaryGameFormat.writeVarInt(out, undoCount);
+        for (int i = 0; i < undoCount; i++) {
+            out.writeShort(undoMoves[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Replaces this game with one written by writeBinary, replaying its moves
+     * @throws IOException if the data is not a valid binary save
+     */
+    public void readBinary(InputStream stream) throws IOException {
+        // Everything is read and replayed on a scratch game, so a bad file leaves this one as it was
+        GameManager loaded = new GameManager();
+        loaded.parseBinary(stream);
+        takeOver(loaded);
+    }
+
+    private void parseBinary(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        byte[] magic = new byte[BinaryGameFormat.MAGIC.length];
+        in.readFully(magic);
+        if (!BinaryGameFormat.isBinary(magic, magic.length)) {
+            throw new IOException("Not a Kwazam binary save");
+        }
+        int version = in.readUnsignedByte();
+        if (version != BinaryGameFormat.VERSION) {
+            throw new IOException("Unsupported save version " + version);
+        }
+
+        player1Name = in.readUTF();
+        player2Name = in.readUTF();
+        turnCount = BinaryGameFormat.readVarInt(in);
+        int flags = in.readUnsignedByte();
+        currentPlayer = (flags & BinaryGameFormat.FLAG_RED_TO_MOVE) != 0 ? PieceColor.RED : PieceColor.BLUE;
+        gameEnded = (flags & BinaryGameFormat.FLAG_GAME_ENDED) != 0;
+        moveCount = BinaryGameFormat.readVarInt(in);
+        board = new ChessBoard();
+        BinaryGameFormat.readBoard(in, board);
+
+        loadedHistory.clear();
+        loadedHistoryVersion++;
+        historyVersion++;
+        history.clear();
+        int historySize = BinaryGameFormat.readVarInt(in);
+        for (int i = 0; i < historySize; i++) {
+            loadedHistory.add(in.readUTF());
+        }
+        undoCount = 0;
+        redoCount = 0;
+        markBasePosition();
+
+        int moves = BinaryGameFormat.readVarInt(in);
+        for (int i = 0; i < moves; i++) {
+            int move = in.readUnsignedShort();
+            if (gameEnded || board.getColorAt(Move.from(move)) != currentPlayer
+                || !board.isValidMove(Move.fromRow(move), Move.fromCol(move), Move.toRow(move), Move.toCol(move))) {
+                throw new IOException("Illegal move " + Move.toString(move) + " at ply " + i);
+            }
+            makeMove(move);
+        }
+    }
+
+    // Adopts the state of a freshly loaded game, which must not be used afterwards; listeners stay
+    private void takeOver(GameManager loaded) {
+        board = loaded.board;
+        currentPlayer = loaded.currentPlayer;
+        turnCount = loaded.turnCount;
+        moveCount = loaded.moveCount;
+        gameEnded = loaded.gameEnded;
+        player1Name = loaded.player1Name;
+        player2Name = loaded.player2Name;
+        loadedHistory = loaded.loadedHistory;
+        loadedHistoryVersion++;
+        historyVersion++;
+        history = loaded.history;
+        undoMoves = loaded.undoMoves;
+        undoFlags = loaded.undoFlags;
+        undoCaptured = loaded.undoCaptured;
+        undoCount = loaded.undoCount;
+        redoCount = 0;
+        baseBoard = loaded.baseBoard;
+        basePlayer = loaded.basePlayer;
+        baseMoveCount = loaded.baseMoveCount;
+        baseGameEnded = loaded.baseGameEnded;
+        baseHistorySize = loaded.baseHistorySize;
+    }
+
+    /**
+     * A new game at the position the move list starts from (see getBaseHistorySize),
+     * with the same players and no history
+     */
+    GameManager getBasePosition() {
+        GameManager base = new GameManager();
+        base.player1Name = player1Name;
+        base.player2Name = player2Name;
+        base.turnCount = turnCount;
+        base.restore(baseBoard, basePlayer, baseMoveCount, baseGameEnded);
+        return base;
+    }
+
+    /**
+     * Index of the first history record played from the base position
+     */
+    int getBaseHistorySize() {
+        return baseHistorySize;
+    }
+
+    /**
+     * Puts the game at a copied position with an empty history and undo stack,
+     * e.g. a replay snapshot
+     */
+    void restore(ChessBoard position, PieceColor player, int moves, boolean ended) {
+        board = new ChessBoard(position);
+        currentPlayer = player;
+        moveCount = moves;
+        gameEnded = ended;
+        loadedHistory.clear();
+        loadedHistoryVersion++;
+        historyVersion++;
+        history.clear();
+        undoCount = 0;
+        redoCount = 0;
+        markBasePosition();
+    }
+
+    // Remembers the current position as the start of the saved move list
+    private void markBasePosition() {
+        baseBoard = new ChessBoard(board);
+        basePlayer = currentPlayer;
+        baseMoveCount = moveCount;
+        baseGameEnded = gameEnded;
+        baseHistorySize = history.size();
+    }
+
     public void setPlayerNames(String player1Name, String player2Name) {
         this.player1Name = player1Name;
         this.player2Name = player2Name;
@@ -234,6 +673,14 @@ public class GameManager {
         currentPlayer = (currentPlayer == PieceColor.BLUE) ? PieceColor.RED : PieceColor.BLUE;
     }
 
+    /**
+     * 64-bit Zobrist key of the whole position: board, Ram directions,
+     * side to move and transform phase
+     */
+    public long getPositionHash() {
+        return board.getHash() ^ Zobrist.sideToMove(currentPlayer) ^ Zobrist.phase(moveCount);
+    }
+
     // Getter methods
     public boolean isGameEnded() {
         return gameEnded;
@@ -247,12 +694,64 @@ public class GameManager {
         return currentPlayer;
     }
 
+    public int getMoveCount() {
+        return moveCount;
+    }
+
     public String getCurrentPlayerName() {
-        return currentPlayer == PieceColor.BLUE ? player1Name : player2Name;
+        return getPlayerName(currentPlayer);
+    }
+
+    public String getPlayerName(PieceColor color) {
+        return color == PieceColor.BLUE ? player1Name : player2Name;
     }
 
+    /**
+     * Renders the whole history as text lines; only the UI and saves need this
+     */
     public List<String> getMoveHistory() {
-        return new ArrayList<>(moveHistory);
+        List<String> lines = new ArrayList<>(loadedHistory.size() + history.size() * 5 / 4);
+        lines.addAll(loadedHistory);
+        for (int i = 0; i < history.size(); i++) {
+            appendHistoryLines(lines, history.get(i));
+        }
+        return lines;
+    }
+
+    /**
+     * History lines loaded from a save, shown before the moves played since
+     */
+    public List<String> getLoadedHistory() {
+        return Collections.unmodifiableList(loadedHistory);
+    }
+
+    /**
+     * Number that changes every time the loaded history lines are replaced
+     */
+    public int getLoadedHistoryVersion() {
+        return loadedHistoryVersion;
+    }
+
+    /**
+     * Number that changes every time moves are taken back or the history is
+     * replaced; while it stays the same, moves have only been appended
+     */
+    public int getHistoryVersion() {
+        return historyVersion;
+    }
+
+    /**
+     * Number of moves played since the game was started or loaded
+     */
+    public int getHistorySize() {
+        return history.size();
+    }
+
+    /**
+     * Packed record (see Move) of the given move since the game was started or loaded
+     */
+    public int getHistoryRecord(int index) {
+        return history.get(index);
     }
 
     public String getPlayer1Name() {
@@ -0,0 +1,128 @@
+/**
+ * Random-access replay of a game's moves
+ */
+
+package model;
+
+/**
+ * Rebuilds any ply of a game from its move list. The moves are played once
+ * up front and a snapshot (board, side to move, move count, game over) is kept every
+ * SNAPSHOT_INTERVAL plies; seek then either steps from the current ply with
+ * makeMove/unmakeMove or restores the snapshot at or before the target and
+ * plays forward from it, whichever takes fewer moves. Any seek therefore
+ * costs at most SNAPSHOT_INTERVAL - 1 moves, however long the game.
+ *
+ * Ply 0 is the position the move list starts from: the initial setup, or
+ * the loaded position for a game loaded from a text save, whose earlier
+ * moves are only known as text.
+ */
+public class GameReplay {
+    public static final int SNAPSHOT_INTERVAL = 16;
+
+    private final int[] moves;
+    private final int[] records;
+    private final ChessBoard[] boards;
+    private final PieceColor[] players;
+    private final int[] moveCounts;
+    private final boolean[] gameEnded;
+    private final GameManager position;
+    private int ply;
+    // Ply the position's undo stack starts from
+    private int anchor;
+
+    /**
+     * Replays the moves played in a game since it was started or loaded; the game is not touched
+     */
+    public GameReplay(GameManager game) {
+        int first = game.getBaseHistorySize();
+        int plies = game.getHistorySize() - first;
+        moves = new int[plies];
+        records = new int[plies];
+        for (int i = 0; i < plies; i++) {
+            records[i] = game.getHistoryRecord(first + i);
+            moves[i] = Move.move(records[i]);
+        }
+
+        int snapshots = plies / SNAPSHOT_INTERVAL + 1;
+        boards = new ChessBoard[snapshots];
+        players = new PieceColor[snapshots];
+        moveCounts = new int[snapshots];
+        gameEnded = new boolean[snapshots];
+        position = game.getBasePosition();
+        for (int i = 0; i <= plies; i++) {
+            if (i % SNAPSHOT_INTERVAL == 0) {
+                int snapshot = i / SNAPSHOT_INTERVAL;
+                boards[snapshot] = new ChessBoard(position.getBoard());
+                players[snapshot] = position.getCurrentPlayer();
+                moveCounts[snapshot] = position.getMoveCount();
+                gameEnded[snapshot] = position.isGameEnded();
+            }
+            if (i < plies) {
+                position.makeMove(moves[i]);
+            }
+        }
+        // The undo stack now reaches back to ply 0 and the position is the last one
+        ply = plies;
+        anchor = 0;
+    }
+
+    /**
+     * Number of moves in the replay; plies run from 0 to this
+     */
+    public int getPlies() {
+        return moves.length;
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Moves the replay to a ply
+     */
+    public void seek(int target) {
+        if (target < 0 || target > moves.length) {
+            throw new IndexOutOfBoundsException("Ply " + target + " of " + moves.length);
+        }
+        int snapshot = target / SNAPSHOT_INTERVAL;
+        int fromSnapshot = target - snapshot * SNAPSHOT_INTERVAL;
+        int fromHere = target >= ply ? target - ply : target >= anchor ? ply - target : Integer.MAX_VALUE;
+        if (fromSnapshot < fromHere) {
+            position.restore(boards[snapshot], players[snapshot], moveCounts[snapshot], gameEnded[snapshot]);
+            ply = snapshot * SNAPSHOT_INTERVAL;
+            anchor = ply;
+        }
+        while (ply < target) {
+            position.makeMove(moves[ply++]);
+        }
+        while (ply > target) {
+            position.unmakeMove();
+            ply--;
+        }
+    }
+
+    /**
+     * The board at the current ply; it changes with the next seek and must not be modified
+     */
+    public ChessBoard getBoard() {
+        return position.getBoard();
+    }
+
+    public PieceColor getCurrentPlayer() {
+        return position.getCurrentPlayer();
+    }
+
+    /**
+     * Packed record (see Move) of the move that led to a ply, from 1 to getPlies()
+     */
+    public int getRecord(int ply) {
+        return records[ply - 1];
+    }
+
+    /**
+     * History line of the move that led to a ply, as shown in the move history
+     */
+    public String describeMove(int ply) {
+        return position.describeMove(records[ply - 1]);
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Outcome of one headless game
+ */
+
+package engine;
+
+import model.PieceColor;
+
+/**
+ * Winner, length, timing and the full move list of a finished game
+ */
+public final class GameResult {
+    private final PieceColor winner;
+    private final int[] moves;
+    private final long nanos;
+
+    public GameResult(PieceColor winner, int[] moves, long nanos) {
+        this.winner = winner;
+        this.moves = moves;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return the side that captured the other Sau, or null for a draw
+     */
+    public PieceColor getWinner() {
+        return winner;
+    }
+
+    public int getPlies() {
+        return moves.length;
+    }
+
+    /**
+     * Packed moves in the order played from the starting position
+     */
+    public int[] getMoves() {
+        return moves.clone();
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * Multi-session game server over a line-based TCP protocol
+ */
+
+package server;
+
+import model.GameManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts any number of independent games in one JVM. Clients send one command
+ * per line and get one reply line per command, in order:
+ *
+ *   NEW [blueName [redName]]   OK id
+ *   MOVE id A2-A3              OK moveCount [TRANSFORM | GAMEOVER winner], or ERR reason
+ *   UNDO id                    OK moveCount
+ *   STATE id                   OK side moveCount PLAYING|OVER board (see GameSession.state)
+ *   CLOSE id                   OK
+ *   STATS                      OK commands=n and the SessionStore counters
+ *   PING                       PONG
+ *
+ * Connections are spread over a few event loops, each a thread with its own
+ * NIO selector that reads, runs and answers commands without blocking, so
+ * thousands of idle connections cost a socket and two small buffers each.
+ * A move is a few microseconds of work under the session's lock, so it runs
+ * inline on the loop rather than being handed to another thread. A client
+ * that sends commands without reading the replies is not read from again
+ * until it has taken most of them, so its queued output stays bounded.
+ * Sessions live in a SessionStore, which keeps only recently used games in
+ * memory; a sweeper thread evicts idle ones every second.
+ *
+ * Usage: java server.GameServer [port] [loops] [maxResident] [idleSeconds] [directory]
+ */
+public class GameServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7070;
+    public static final int DEFAULT_MAX_RESIDENT = 100_000;
+    public static final long DEFAULT_IDLE_MILLIS = 5 * 60 * 1000;
+    public static final String DEFAULT_DIRECTORY = "sessions";
+    private static final int BUFFER_BYTES = 4096;
+    private static final int MAX_LINE = 1024;
+    // Replies queued for a client beyond this stop the server reading its commands
+    private static final int MAX_PENDING_OUTPUT = 64 * 1024;
+
+    private final ServerSocketChannel serverChannel;
+    private final Loop[] loops;
+    private final Thread acceptor;
+    private final SessionStore sessions;
+    private final ScheduledExecutorService sweeper;
+    private final AtomicLong commands = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Starts listening on the port (0 for any free port) with the given number of event loops
+     */
+    public GameServer(int port, int loopCount, SessionStore sessions) throws IOException {
+        this.sessions = sessions;
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        loops = new Loop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new Loop(Selector.open());
+            Thread thread = new Thread(loops[i], "server-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        acceptor = new Thread(this::accept, "server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "server-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sessions.evictIdle();
+            } catch (IOException e) {
+                System.err.println("Error evicting idle sessions: " + e.getMessage());
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public SessionStore getSessions() {
+        return sessions;
+    }
+
+    // Hands new connections to the loops in turn
+    private void accept() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                loops[next].add(channel);
+                next = (next + 1) % loops.length;
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one command line
+     * @return the reply line, without the line break
+     */
+    String execute(String line) {
+        commands.incrementAndGet();
+        String[] parts = line.trim().split("\\s+");
+        String command = parts[0].toUpperCase();
+        try {
+            switch (command) {
+                case "NEW": {
+                    GameManager game = new GameManager();
+                    game.setPlayerNames(parts.length > 1 ? parts[1] : "Blue", parts.length > 2 ? parts[2] : "Red");
+                    return "OK " + sessions.create(game);
+                }
+                case "MOVE": {
+                    if (parts.length != 3) {
+                        return "ERR usage: MOVE id A2-A3";
+                    }
+                    return orUnknown(sessions.apply(Long.parseLong(parts[1]), session -> session.move(parts[2])), parts[1]);
+                }
+                case "UNDO":
+                    return orUnknown(sessions.apply(Long.parseLong(parts[1]), GameSession::undo), parts[1]);
+                case "STATE":
+                    return orUnknown(sessions.apply(Long.parseLong(parts[1]), GameSession::state), parts[1]);
+                case "CLOSE":
+                    return sessions.remove(Long.parseLong(parts[1])) ? "OK" : unknown(parts[1]);
+                case "STATS":
+                    return "OK commands=" + commands.get() + " " + sessions.getStats();
+                case "PING":
+                    return "PONG";
+                default:
+                    return "ERR unknown command " + parts[0];
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return "ERR bad arguments";
+        } catch (IOException | UncheckedIOException e) {
+            return "ERR session storage: " + e.getMessage();
+        }
+    }
+
+    private static String orUnknown(String reply, String id) {
+        return reply == null ? unknown(id) : reply;
+    }
+
+    private static String unknown(String id) {
+        return "ERR no session " + id;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        sweeper.shutdownNow();
+        serverChannel.close();
+        for (Loop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    /**
+     * One selector thread and the connections assigned to it
+     */
+    private final class Loop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> added = new ConcurrentLinkedQueue<>();
+
+        Loop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void add(SocketChannel channel) {
+            added.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    for (SocketChannel channel; (channel = added.poll()) != null; ) {
+                        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush(key);
+                            }
+                        } catch (IOException e) {
+                            connection.close(key);
+                        }
+                    }
+                }
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Server loop stopped: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Buffers of one client connection; only touched by its loop
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        private ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+        private final StringBuilder line = new StringBuilder();
+        // Dropping the rest of a line that was too long
+        private boolean discarding;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read(SelectionKey key) throws IOException {
+            int read = channel.read(in);
+            if (read < 0) {
+                close(key);
+                return;
+            }
+            in.flip();
+            while (in.hasRemaining()) {
+                char c = (char) (in.get() & 0xFF);
+                if (c == '\n') {
+                    if (!discarding) {
+                        reply(execute(line.toString()));
+                    }
+                    discarding = false;
+                    line.setLength(0);
+                } else if (c != '\r' && !discarding) {
+                    if (line.length() == MAX_LINE) {
+                        reply("ERR line too long");
+                        line.setLength(0);
+                        discarding = true;
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+            in.clear();
+            flush(key);
+        }
+
+        private void reply(String text) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < bytes.length + 1) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes.length + 1));
+                out.flip();
+                larger.put(out);
+                out = larger;
+            }
+            out.put(bytes).put((byte) '\n');
+        }
+
+        // Writes what the socket takes now and waits for OP_WRITE for the rest;
+        // stops reading while too much is still queued
+        void flush(SelectionKey key) throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            int pending = out.position();
+            int ops = pending > 0 ? SelectionKey.OP_WRITE : 0;
+            if (pending <= MAX_PENDING_OUTPUT) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+
+        void close(SelectionKey key) {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int loops = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int maxResident = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_RESIDENT;
+        long idleMillis = args.length > 3 ? Long.parseLong(args[3]) * 1000 : DEFAULT_IDLE_MILLIS;
+        Path directory = Paths.get(args.length > 4 ? args[4] : DEFAULT_DIRECTORY);
+        GameServer server = new GameServer(port, loops, new SessionStore(directory, maxResident, idleMillis));
+        System.out.printf("Kwazam server listening on port %d with %d loops%n", server.getPort(), loops);
+        server.acceptor.join();
+    }
+}
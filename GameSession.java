@@ -0,0 +1,117 @@
+/**
+ * One game hosted by the game server
+ */
+
+package server;
+
+import model.ChessBoard;
+import model.GameManager;
+import model.Move;
+import model.PieceColor;
+import model.PieceType;
+
+/**
+ * A GameManager behind an id. Several connections may play the same session,
+ * so every command locks the session; different sessions never contend.
+ * Once SessionStore has evicted a session, this object is stale and the
+ * store loads a fresh one from the saved copy.
+ */
+public class GameSession {
+    private static final String PIECE_LETTERS = "RBSTX";
+
+    private final long id;
+    private final GameManager game;
+    private volatile long lastAccess;
+    private boolean evicted;
+
+    public GameSession(long id, GameManager game) {
+        this.id = id;
+        this.game = game;
+        lastAccess = System.nanoTime();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    GameManager getGame() {
+        return game;
+    }
+
+    synchronized boolean isEvicted() {
+        return evicted;
+    }
+
+    synchronized void markEvicted() {
+        evicted = true;
+    }
+
+    /**
+     * System.nanoTime of the last command on this session
+     */
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Plays a move for the side to move after checking it against the rules
+     * @return the reply line
+     */
+    public synchronized String move(String text) {
+        lastAccess = System.nanoTime();
+        int move = Move.parse(text);
+        if (move < 0) {
+            return "ERR bad move " + text;
+        }
+        if (game.isGameEnded()) {
+            return "ERR game over";
+        }
+        if (!game.movePiece(Move.fromRow(move), Move.fromCol(move), Move.toRow(move), Move.toCol(move))) {
+            return "ERR illegal move " + text;
+        }
+
+        int record = game.getHistoryRecord(game.getHistorySize() - 1);
+        StringBuilder reply = new StringBuilder("OK ").append(game.getMoveCount());
+        if (Move.isGameOver(record)) {
+            reply.append(" GAMEOVER ").append(Move.mover(record));
+        } else if (Move.isTransform(record)) {
+            reply.append(" TRANSFORM");
+        }
+        return reply.toString();
+    }
+
+    /**
+     * Takes back the last move
+     */
+    public synchronized String undo() {
+        lastAccess = System.nanoTime();
+        if (!game.undoMove()) {
+            return "ERR nothing to undo";
+        }
+        return "OK " + game.getMoveCount();
+    }
+
+    /**
+     * Side to move, move count, whether the game is over and the board from
+     * the top row down: letters RBSTX, upper case for Blue, lower case for
+     * Red, '.' for an empty square
+     */
+    public synchronized String state() {
+        lastAccess = System.nanoTime();
+        ChessBoard board = game.getBoard();
+        StringBuilder reply = new StringBuilder("OK ")
+            .append(game.getCurrentPlayer()).append(' ')
+            .append(game.getMoveCount()).append(' ')
+            .append(game.isGameEnded() ? "OVER" : "PLAYING").append(' ');
+        for (int square = 0; square < ChessBoard.SQUARES; square++) {
+            PieceType type = board.getTypeAt(square);
+            if (type == null) {
+                reply.append('.');
+            } else {
+                char letter = PIECE_LETTERS.charAt(type.ordinal());
+                reply.append(board.getColorAt(square) == PieceColor.BLUE ? letter : Character.toLowerCase(letter));
+            }
+        }
+        return reply.toString();
+    }
+}
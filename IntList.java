@@ -0,0 +1,65 @@
+/**
+ * Growable list of primitive ints
+ */
+
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Minimal int list used for move history, so storing a move costs four bytes
+ * and no boxing. Grows by doubling.
+ */
+public final class IntList {
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        values = new int[64];
+    }
+
+    public IntList(IntList other) {
+        values = Arrays.copyOf(other.values, Math.max(64, other.size));
+        size = other.size;
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * Removes and returns the last value
+     */
+    public int removeLast() {
+        if (size == 0) {
+            throw new IllegalStateException("List is empty");
+        }
+        return values[--size];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
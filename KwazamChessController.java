@@ -5,11 +5,17 @@
 
 package controller;
 import model.*;
+import engine.OpeningBook;
+import engine.Tablebase;
+import engine.SearchEngine;
+import engine.SearchLimits;
+import engine.SearchResult;
 import view.KwazamChessView;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import util.SoundPlayer;
 
 /**
@@ -21,13 +27,31 @@ public class KwazamChessController {
     private KwazamChessView view;
     private int selectedRow;
     private int selectedCol;
-    private List<Position> validMoves;
+    private final LegalMoveCache legalMoves = new LegalMoveCache();
+    private long validTargets;
+    private static final long COMPUTER_MOVE_MILLIS = 1500;
+    private PieceColor computerColor;
+    private SearchEngine engine;
+    private boolean computerThinking;
+    // Bumped when the game is replaced, so a search of the old game is not played into the new one
+    private int searchGeneration;
+    // Set once the window has moved on to another controller
+    private boolean disposed;
+    private final GameListener soundListener = SoundPlayer::onGameEvent;
+    private static OpeningBook openingBook;
+    private static boolean openingBookLoaded;
+    // Tablebase state, only touched on the event thread; see requestTablebase
+    private static Tablebase tablebase;
+    private static boolean tablebaseLoaded;
+    private static boolean tablebaseLoading;
+    private static int tablebasePieces = -1;
 
     public KwazamChessController() {
         gameManager = new GameManager();
-        validMoves = new ArrayList<>();
+        gameManager.getEventBus().subscribe(soundListener);
         selectedRow = -1;
         selectedCol = -1;
+        legalMoves.prefill(gameManager);
     }
 
     public void setView(KwazamChessView view) {
@@ -36,6 +60,18 @@ public class KwazamChessController {
         SoundPlayer.playSound("background");
     }
 
+    /**
+     * Detaches this controller from the window and its sounds when a new game
+     * replaces it; a search or tablebase load still running then finishes
+     * without touching the game or the view
+     */
+    public void dispose() {
+        disposed = true;
+        searchGeneration++;
+        view = null;
+        gameManager.getEventBus().unsubscribe(soundListener);
+    }
+
     /**
      * Gets move history from game manager
      * @author Kuanyang
@@ -44,6 +80,17 @@ public class KwazamChessController {
         return gameManager.getMoveHistory();
     }
 
+    public GameManager getGameManager() {
+        return gameManager;
+    }
+
+    /**
+     * Replay of the moves played so far, independent of the game
+     */
+    public GameReplay createReplay() {
+        return new GameReplay(gameManager);
+    }
+
     public void startGame() {
         view = new KwazamChessView(this);
         view.setVisible(true);
@@ -56,6 +103,74 @@ public class KwazamChessController {
         }
     }
 
+    /**
+     * Lets the search engine play Red
+     */
+    public void setComputerOpponent(boolean enabled) {
+        searchGeneration++;
+        computerColor = enabled ? PieceColor.RED : null;
+        engine = enabled ? new SearchEngine() : null;
+        if (engine != null) {
+            engine.setOpeningBook(getOpeningBook());
+        }
+        startComputerMove();
+    }
+
+    // The book file is opened once and shared by every game in this window
+    private static synchronized OpeningBook getOpeningBook() {
+        if (!openingBookLoaded) {
+            openingBook = OpeningBook.openDefault();
+            openingBookLoaded = true;
+        }
+        return openingBook;
+    }
+
+    /**
+     * Endgame tables are read into memory once, in the background, the first
+     * time the game reaches a position with few enough pieces for them
+     * @return the tables, or null while they are not loaded
+     */
+    private Tablebase requestTablebase() {
+        if (tablebaseLoaded || tablebaseLoading) {
+            return tablebase;
+        }
+        int pieces = Long.bitCount(gameManager.getBoard().getOccupied());
+        if (tablebasePieces >= 0 && pieces > tablebasePieces) {
+            return null;
+        }
+
+        tablebaseLoading = true;
+        boolean listed = tablebasePieces >= 0;
+        new SwingWorker<Tablebase, Void>() {
+            private int available = tablebasePieces;
+
+            @Override
+            protected Tablebase doInBackground() {
+                if (!listed) {
+                    available = Tablebase.availablePieces();
+                }
+                return pieces <= available ? Tablebase.loadDefault() : null;
+            }
+
+            @Override
+            protected void done() {
+                tablebaseLoading = false;
+                tablebasePieces = available;
+                try {
+                    tablebase = get();
+                    tablebaseLoaded = pieces <= available;
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Error loading tablebases: " + e.getMessage());
+                    tablebaseLoaded = true;
+                }
+                if (tablebase != null && !computerThinking && !disposed) {
+                    updateStatusMessage();
+                }
+            }
+        }.execute();
+        return null;
+    }
+
     public String getCurrentPlayerName() {
         return gameManager.getCurrentPlayerName();
     }
@@ -64,8 +179,15 @@ public class KwazamChessController {
         return gameManager.getBoard().getPiece(row, col);
     }
 
+    public String getImagePathAt(int row, int col) {
+        return gameManager.getBoard().getImagePath(row, col);
+    }
+
     public boolean isValidMovePosition(int row, int col) {
-        return validMoves.contains(new Position(row, col));
+        if (row < 0 || row >= ChessBoard.ROWS || col < 0 || col >= ChessBoard.COLS) {
+            return false;
+        }
+        return (validTargets & (1L << ChessBoard.square(row, col))) != 0;
     }
 
     /**
@@ -82,14 +204,52 @@ public class KwazamChessController {
      */
     public void loadGame(String filename) throws IOException {
         gameManager.loadGame(filename);
+        searchGeneration++;
         updateView();
+        startComputerMove();
+    }
+
+    /**
+     * Takes back the last move
+     */
+    public void undoMove() {
+        if (computerThinking) {
+            return;
+        }
+        if (gameManager.undoMove()) {
+            // Against the computer, go back to the human player's last turn
+            while (gameManager.getCurrentPlayer() == computerColor && gameManager.canUndo()) {
+                gameManager.undoMove();
+            }
+            clearSelection();
+            updateView();
+        }
+    }
+
+    /**
+     * Replays the last move that was taken back
+     */
+    public void redoMove() {
+        if (computerThinking) {
+            return;
+        }
+        if (gameManager.redoMove()) {
+            if (gameManager.getCurrentPlayer() == computerColor) {
+                gameManager.redoMove();
+            }
+            clearSelection();
+            updateView();
+            startComputerMove();
+        }
     }
 
     // Updates game status and view after moves
     private void updateView() {
+        // Have the next position's moves ready before the player selects a piece
+        legalMoves.prefill(gameManager);
         if (view != null) {  // Only update if view exists
             view.updateBoard();
-            view.updateMoveHistory(gameManager.getMoveHistory());
+            view.updateMoveHistory(gameManager);
             updateStatusMessage();
         }
     }
@@ -103,7 +263,16 @@ public class KwazamChessController {
             } else {
                 String currentPlayerName = gameManager.getCurrentPlayer() == PieceColor.BLUE ? 
                         gameManager.getPlayer1Name() : gameManager.getPlayer2Name();
-                view.updateStatus(currentPlayerName + "'s turn");
+                String status = currentPlayerName + "'s turn";
+                // Once the position is in the endgame tables, show its exact result
+                Tablebase tables = requestTablebase();
+                if (tables != null) {
+                    String result = Tablebase.describe(tables.probe(gameManager), gameManager.getCurrentPlayer());
+                    if (result != null) {
+                        status += " - " + result;
+                    }
+                }
+                view.updateStatus(status);
             }
         }
     }
@@ -113,6 +282,9 @@ public class KwazamChessController {
      * @author Aleesya
      */
     public void onCellClicked(int row, int col) {
+        if (computerThinking || gameManager.getCurrentPlayer() == computerColor) {
+            return;
+        }
         Piece clickedPiece = getPieceAt(row, col);
 
         if (selectedRow == -1) {
@@ -128,16 +300,8 @@ public class KwazamChessController {
                 if (moved) {
                     clearSelection();
                     updateView();
-
-                    if (gameManager.isGameEnded()) {
-                        String winner = gameManager.getCurrentPlayer() == PieceColor.BLUE ? 
-                                gameManager.getPlayer2Name() : gameManager.getPlayer1Name();
-
-                        JOptionPane.showMessageDialog(view,
-                            "Congratulations " + winner + "!\nYou've won the game!",
-                            "Game Over",
-                            JOptionPane.INFORMATION_MESSAGE);
-                    }
+                    showWinnerIfGameOver();
+                    startComputerMove();
                 }
             } else {
                 if (clickedPiece != null && clickedPiece.getColor() == gameManager.getCurrentPlayer()) {
@@ -152,28 +316,80 @@ public class KwazamChessController {
         }
     }
 
+    private void showWinnerIfGameOver() {
+        if (gameManager.isGameEnded()) {
+            String winner = gameManager.getCurrentPlayer() == PieceColor.BLUE ? 
+                    gameManager.getPlayer2Name() : gameManager.getPlayer1Name();
+
+            JOptionPane.showMessageDialog(view,
+                "Congratulations " + winner + "!\nYou've won the game!",
+                "Game Over",
+                JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    /**
+     * Searches for the computer's move off the event thread when it is its turn
+     */
+    private void startComputerMove() {
+        if (disposed || engine == null || computerThinking || gameManager.isGameEnded()
+                || gameManager.getCurrentPlayer() != computerColor) {
+            return;
+        }
+
+        computerThinking = true;
+        if (view != null) {
+            view.updateStatus(gameManager.getCurrentPlayerName() + " is thinking...");
+        }
+        SearchEngine searcher = engine;
+        searcher.setTablebase(requestTablebase());
+        GameManager position = new GameManager(gameManager);
+        int generation = searchGeneration;
+        new SwingWorker<SearchResult, Void>() {
+            @Override
+            protected SearchResult doInBackground() {
+                return searcher.search(position, SearchLimits.millis(COMPUTER_MOVE_MILLIS));
+            }
+
+            @Override
+            protected void done() {
+                computerThinking = false;
+                if (generation != searchGeneration) {
+                    // A game was loaded or the opponent changed meanwhile: search the new position instead
+                    updateStatusMessage();
+                    startComputerMove();
+                    return;
+                }
+                try {
+                    int move = get().getBestMove();
+                    if (move >= 0 && gameManager.movePiece(Move.fromRow(move), Move.fromCol(move),
+                            Move.toRow(move), Move.toCol(move))) {
+                        clearSelection();
+                        updateView();
+                        showWinnerIfGameOver();
+                    } else {
+                        updateStatusMessage();
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Error during computer move:");
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
     private void clearSelection() {
         selectedRow = -1;
         selectedCol = -1;
-        validMoves.clear();
+        validTargets = 0;
     }
 
-    // Calculates valid moves for selected piece
+    // Looks up the valid moves of the selected piece
     private void calculateValidMoves(int row, int col) {
-        validMoves.clear();
-        Piece piece = getPieceAt(row, col);
-
-        if (piece != null) {
-            for (int r = 0; r < 8; r++) {
-                for (int c = 0; c < 5; c++) {
-                    if (gameManager.getBoard().isValidMove(row, col, r, c)) {
-                        validMoves.add(new Position(r, c));
-                    }
-                }
-            }
-        }
+        validTargets = legalMoves.get(gameManager).getTargets(ChessBoard.square(row, col));
     }
 
+
     public boolean isSelected(int row, int col) {
         return row == selectedRow && col == selectedCol;
     }
@@ -181,26 +397,4 @@ public class KwazamChessController {
     public PieceColor getCurrentPlayer() {
         return gameManager.getCurrentPlayer();
     }
-
-    public static class Position {
-        private final int row;
-        private final int col;
-
-        public Position(int row, int col) {
-            this.row = row;
-            this.col = col;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof Position)) return false;
-            Position other = (Position) obj;
-            return this.row == other.row && this.col == other.col;
-        }
-
-        @Override
-        public int hashCode() {
-            return 31 * row + col;
-        }
-    }
 }
\ No newline at end of file
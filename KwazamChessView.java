@@ -7,27 +7,22 @@ package view;
 
 import model.*;
 import controller.KwazamChessController;
+import util.FlightEvents;
+import util.Metrics;
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.*;
 import java.io.IOException;
-import java.util.List;
-import java.awt.image.BufferedImage;
-import java.awt.Graphics2D;
 
 public class KwazamChessView extends JFrame {
     /**
      * Initializes board display with flip capability
      * @author Zeti, Aleesya
      */
-    private static final int ROWS = 8;
-    private static final int COLS = 5;
     private static final int CELL_SIZE = 80;
-    private static final Color HIGHLIGHT_COLOR = new Color(255, 255, 0); 
-    private static final Color SELECTED_COLOR = new Color(173, 216, 230);
+    private static final Metrics.Histogram INITIALIZE_TIME = Metrics.histogram("view.initializeComponents");
 
-    private JPanel boardPanel;
+    private BoardPanel boardPanel;
     private JLabel statusLabel;
     private KwazamChessController controller;
     private MoveHistoryPanel historyPanel;
@@ -45,7 +40,20 @@ public class KwazamChessView extends JFrame {
         // Initialize components first
         JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
         mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        FlightEvents.RenderEvent event = Metrics.ENABLED ? new FlightEvents.RenderEvent() : null;
+        long start = 0;
+        if (Metrics.ENABLED) {
+            event.begin();
+            start = System.nanoTime();
+        }
         initializeComponents(mainPanel);
+        if (Metrics.ENABLED) {
+            INITIALIZE_TIME.recordSince(start);
+            if (event.shouldCommit()) {
+                event.phase = "initialize";
+                event.commit();
+            }
+        }
         add(mainPanel);
 
         // Then show player setup dialog
@@ -57,6 +65,7 @@ public class KwazamChessView extends JFrame {
 
         // Set player names after UI components are initialized
         controller.setPlayerNames(setup.getPlayer1Name(), setup.getPlayer2Name());
+        controller.setComputerOpponent(setup.isComputerOpponent());
 
         pack();
         setLocationRelativeTo(null);
@@ -70,20 +79,28 @@ public class KwazamChessView extends JFrame {
         mainPanel.add(statusLabel, BorderLayout.NORTH);
 
         // Create board panel
-        boardPanel = new JPanel(new GridLayout(ROWS, COLS));
-        boardPanel.setPreferredSize(new Dimension(COLS * CELL_SIZE, ROWS * CELL_SIZE));
+        boardPanel = new BoardPanel(CELL_SIZE, (row, col) -> controller.onCellClicked(row, col));
         mainPanel.add(boardPanel, BorderLayout.CENTER);
 
         // Create control panel
         controlPanel = new JPanel(new FlowLayout());
         JButton saveButton = new JButton("Save Game");
         JButton loadButton = new JButton("Load Game");
+        JButton undoButton = new JButton("Undo");
+        JButton redoButton = new JButton("Redo");
+        JButton replayButton = new JButton("Replay");
 
         saveButton.addActionListener(e -> saveGame());
         loadButton.addActionListener(e -> loadGame());
+        undoButton.addActionListener(e -> controller.undoMove());
+        redoButton.addActionListener(e -> controller.redoMove());
+        replayButton.addActionListener(e -> new ReplayDialog(this, controller.createReplay(), isFlipped).setVisible(true));
 
         controlPanel.add(saveButton);
         controlPanel.add(loadButton);
+        controlPanel.add(undoButton);
+        controlPanel.add(redoButton);
+        controlPanel.add(replayButton);
         mainPanel.add(controlPanel, BorderLayout.SOUTH);
 
         // Add move history panel
@@ -91,7 +108,7 @@ public class KwazamChessView extends JFrame {
         mainPanel.add(historyPanel, BorderLayout.EAST);
 
         add(mainPanel);
-        initializeBoard();
+        updateBoard();
         pack();
         setLocationRelativeTo(null);
 
@@ -105,7 +122,8 @@ public class KwazamChessView extends JFrame {
                         );
 
                     if (choice == JOptionPane.YES_OPTION) {
-                        // Create new controller and update the view reference
+                        // Stop the old game from updating the view, then create the new controller
+                        controller.dispose();
                         KwazamChessController newController = new KwazamChessController();
                         this.controller = newController;
                         newController.setView(this);  // Set the view reference in the new controller
@@ -114,8 +132,9 @@ public class KwazamChessView extends JFrame {
                         setup.setVisible(true);
                         if (setup.isConfirmed()) {
                             newController.setPlayerNames(setup.getPlayer1Name(), setup.getPlayer2Name());
+                            newController.setComputerOpponent(setup.isComputerOpponent());
                             updateBoard();
-                            historyPanel.updateHistory(newController.getMoveHistory());
+                            historyPanel.updateHistory(newController.getGameManager());
                             updateStatus(newController.getCurrentPlayerName() + "'s turn");
                         }
                     }
@@ -124,94 +143,6 @@ public class KwazamChessView extends JFrame {
         controlPanel.add(newGameButton, 0);
     }
 
-    private void initializeBoard() {
-        boardPanel.removeAll();
-
-        for (int i = 0; i < ROWS; i++) {
-            for (int j = 0; j < COLS; j++) {
-                int row = isFlipped ? (ROWS - 1 - i) : i;
-                int col = isFlipped ? (COLS - 1 - j) : j;
-
-                JPanel cell = createCellPanel(row, col);
-                Piece piece = controller.getPieceAt(row, col);
-
-                if (piece != null) {
-                    try {
-                        ImageIcon icon = new ImageIcon(getClass().getResource("/chessImages/" + piece.getImagePath()));
-                        Image img = icon.getImage();
-                        if (img != null) {
-                            if (isFlipped) {
-                                img = createFlippedImage(img);
-                            }
-                            img = img.getScaledInstance(CELL_SIZE - 10, CELL_SIZE - 10, Image.SCALE_SMOOTH);
-                            JLabel pieceLabel = new JLabel(new ImageIcon(img));
-                            pieceLabel.setHorizontalAlignment(JLabel.CENTER);
-                            cell.add(pieceLabel);
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error loading image: " + piece.getImagePath());
-                    }
-                }
-
-                boardPanel.add(cell);
-            }
-        }
-        boardPanel.revalidate();
-        boardPanel.repaint();
-    }
-
-    private JPanel createCellPanel(int row, int col) {
-        JPanel cell = new JPanel(new BorderLayout());
-        cell.setBorder(BorderFactory.createLineBorder(Color.BLACK, 1));
-
-        if (controller.isSelected(row, col)) {
-            cell.setBackground(SELECTED_COLOR);
-        } else if (controller.isValidMovePosition(row, col)) {
-            cell.setBackground(HIGHLIGHT_COLOR);
-        } else {
-            cell.setBackground((row + col) % 2 == 0 ? new Color(212,186,149) : new Color(153,99,54));
-        }
-
-        final int finalRow = row;
-        final int finalCol = col;
-        cell.addMouseListener(new MouseAdapter() {
-                @Override
-                public void mouseClicked(MouseEvent e) {
-                    controller.onCellClicked(finalRow, finalCol);
-                }
-            });
-
-        return cell;
-    }
-
-    private Image createFlippedImage(Image image) {
-        MediaTracker tracker = new MediaTracker(this);
-        tracker.addImage(image, 0);
-        try {
-            tracker.waitForID(0);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-
-        int width = image.getWidth(null);
-        int height = image.getHeight(null);
-
-        // Check for valid dimensions
-        if (width <= 0 || height <= 0) {
-            return image;
-        }
-
-        BufferedImage flippedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = flippedImage.createGraphics();
-
-        g.translate(width, height);
-        g.scale(-1, -1);
-        g.drawImage(image, 0, 0, null);
-        g.dispose();
-
-        return flippedImage;
-    }
-
     private void saveGame() {
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
@@ -244,7 +175,7 @@ public class KwazamChessView extends JFrame {
     public void updateBoard() {
         // Flip the board automatically based on current player
         isFlipped = controller.getCurrentPlayer() == PieceColor.RED;
-        initializeBoard();
+        boardPanel.update(controller, isFlipped);
     }
 
     public void updateStatus(String status) {
@@ -255,7 +186,7 @@ public class KwazamChessView extends JFrame {
      * Updates move history display
      * @author Kuanyang
      */
-    public void updateMoveHistory(List<String> moves) {
-        historyPanel.updateHistory(moves);
+    public void updateMoveHistory(GameManager game) {
+        historyPanel.updateHistory(game);
     }
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+/**
+ * Per-position cache of legal move targets for the user interface
+ */
+
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Remembers the legal moves of recently seen positions, keyed by
+ * GameManager.getPositionHash, as one target mask per square. Selecting a
+ * piece, highlighting its targets and asking whether the side to move can
+ * move at all are then lookups. The hash covers the board, the side to move
+ * and the transform phase, so any move or transform leads to a different
+ * entry and nothing has to be invalidated; the least recently used entries
+ * are dropped once the cache is full.
+ *
+ * prefill computes a position and every position one move after it on a
+ * background thread shared by all caches, so the entry is usually ready
+ * before the player clicks. All methods may be called from any thread.
+ */
+public class LegalMoveCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final LegalMoves NO_MOVES = new LegalMoves(new long[ChessBoard.SQUARES], 0);
+    // One thread for every cache, so a window that starts new games does not collect threads
+    private static final ExecutorService PREFILLER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "legal-move-prefill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this
+    private final LinkedHashMap<Long, LegalMoves> entries;
+
+    public LegalMoveCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LegalMoveCache(int capacity) {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, LegalMoves> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Legal moves of the side to move, computed now if the position is not cached
+     */
+    public LegalMoves get(GameManager game) {
+        if (game.isGameEnded()) {
+            return NO_MOVES;
+        }
+        long key = game.getPositionHash();
+        LegalMoves moves;
+        synchronized (this) {
+            moves = entries.get(key);
+        }
+        if (moves == null) {
+            moves = compute(game.getBoard(), game.getCurrentPlayer());
+            synchronized (this) {
+                entries.put(key, moves);
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Fills the cache for the game's position and the positions one move
+     * later in the background. Only the board, side to move and move count
+     * are copied, so the cost on the caller's thread does not grow with the game.
+     */
+    public void prefill(GameManager game) {
+        if (game.isGameEnded()) {
+            return;
+        }
+        ChessBoard board = new ChessBoard(game.getBoard());
+        PieceColor player = game.getCurrentPlayer();
+        int moveCount = game.getMoveCount();
+        PREFILLER.execute(() -> {
+            GameManager position = new GameManager();
+            position.restore(board, player, moveCount, false);
+            LegalMoves moves = get(position);
+            for (int from = 0; from < ChessBoard.SQUARES; from++) {
+                for (long targets = moves.getTargets(from); targets != 0; targets &= targets - 1) {
+                    position.makeMove(Move.of(from, Long.numberOfTrailingZeros(targets)));
+                    get(position);
+                    position.unmakeMove();
+                }
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static LegalMoves compute(ChessBoard board, PieceColor side) {
+        long[] targets = new long[ChessBoard.SQUARES];
+        long movable = 0;
+        for (long pieces = board.getColorMask(side); pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            targets[square] = board.getTargets(square);
+            if (targets[square] != 0) {
+                movable |= 1L << square;
+            }
+        }
+        return new LegalMoves(targets, movable);
+    }
+
+    /**
+     * Legal moves of one position, by the square they start from
+     */
+    public static final class LegalMoves {
+        private final long[] targets;
+        private final long movable;
+
+        LegalMoves(long[] targets, long movable) {
+            this.targets = targets;
+            this.movable = movable;
+        }
+
+        /**
+         * Squares the piece on a square may move to; 0 for an empty square
+         * or a piece of the side not to move
+         */
+        public long getTargets(int square) {
+            return targets[square];
+        }
+
+        /**
+         * Squares holding a piece of the side to move that has a legal move
+         */
+        public long getMovable() {
+            return movable;
+        }
+
+        public boolean hasMoves() {
+            return movable != 0;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Load generator for the game server
+ */
+
+package server;
+
+import model.GameManager;
+import model.IntList;
+import model.Move;
+import model.MoveGenerator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+
+/**
+ * Opens many sessions over a number of connections and plays random legal
+ * moves in all of them for a while, one request in flight per connection.
+ * Each session is mirrored in a local GameManager to pick legal moves and
+ * to check the server's replies. Finished games are closed and replaced by new ones.
+ * Reports throughput and the round-trip latency percentiles of MOVE commands.
+ *
+ * Usage: java server.LoadGenerator [host] [port] [sessions] [connections] [seconds] [maxResident]
+ *   With host "local" a server is started in this JVM on a free port, keeping at
+ *   most maxResident sessions in memory and spilling the rest to a temporary directory.
+ */
+public class LoadGenerator {
+    private final SplittableRandom random = new SplittableRandom(7);
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    // Round trips in nanoseconds, capped at Integer.MAX_VALUE
+    private final IntList latencies = new IntList();
+    private long errors;
+    private long gamesFinished;
+
+    /**
+     * One connection and the sessions it plays in turn
+     */
+    private final class Client {
+        private static final int NEW = -1;
+        private static final int CLOSE = -2;
+
+        private final SocketChannel channel;
+        private final long[] ids;
+        private final GameManager[] games;
+        private final ByteBuffer in = ByteBuffer.allocate(4096);
+        private final StringBuilder line = new StringBuilder();
+        private ByteBuffer out = ByteBuffer.allocate(0);
+        private int next;
+        private int pendingSession = -1;
+        private int pendingMove;
+        private long sentAt;
+        private long finished;
+
+        Client(SocketChannel channel, int sessions) {
+            this.channel = channel;
+            ids = new long[sessions];
+            games = new GameManager[sessions];
+        }
+
+        // Closes a finished game, sends NEW for every session that has no id yet, then MOVEs round robin
+        void sendNext() throws IOException {
+            if (finished != 0) {
+                pendingMove = CLOSE;
+                send("CLOSE " + finished);
+                finished = 0;
+                return;
+            }
+            int unopened = unopened();
+            if (unopened >= 0) {
+                pendingSession = unopened;
+                pendingMove = NEW;
+                send("NEW");
+                return;
+            }
+            int session = next;
+            next = (next + 1) % ids.length;
+            GameManager game = games[session];
+            int count = MoveGenerator.generate(game.getBoard(), game.getCurrentPlayer(), moves);
+            if (count == 0) {
+                // Nothing to play: start this session over
+                ids[session] = 0;
+                sendNext();
+                return;
+            }
+            pendingSession = session;
+            pendingMove = moves[random.nextInt(count)];
+            send("MOVE " + ids[session] + " " + Move.toString(pendingMove));
+        }
+
+        int unopened() {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void send(String command) throws IOException {
+            out = ByteBuffer.wrap((command + "\n").getBytes(StandardCharsets.US_ASCII));
+            sentAt = System.nanoTime();
+            channel.write(out);
+        }
+
+        /**
+         * @return true when a full reply has arrived
+         */
+        boolean read() throws IOException {
+            if (channel.read(in) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+            in.flip();
+            boolean complete = false;
+            while (in.hasRemaining()) {
+                char c = (char) in.get();
+                if (c == '\n') {
+                    complete = true;
+                    handle(line.toString(), System.nanoTime() - sentAt);
+                    line.setLength(0);
+                } else {
+                    line.append(c);
+                }
+            }
+            in.clear();
+            return complete;
+        }
+
+        private void handle(String reply, long nanos) {
+            if (!reply.startsWith("OK")) {
+                errors++;
+                if (pendingMove != CLOSE) {
+                    ids[pendingSession] = 0;
+                }
+                return;
+            }
+            if (pendingMove == CLOSE) {
+                return;
+            }
+            if (pendingMove == NEW) {
+                ids[pendingSession] = Long.parseLong(reply.substring(3));
+                games[pendingSession] = new GameManager();
+                return;
+            }
+            latencies.add((int) Math.min(nanos, Integer.MAX_VALUE));
+            GameManager game = games[pendingSession];
+            game.makeMove(pendingMove);
+            if (!reply.equals(expectedReply(game))) {
+                errors++;
+            }
+            if (game.isGameEnded()) {
+                gamesFinished++;
+                finished = ids[pendingSession];
+                ids[pendingSession] = 0;
+            }
+        }
+
+        private String expectedReply(GameManager game) {
+            int record = game.getHistoryRecord(game.getHistorySize() - 1);
+            if (Move.isGameOver(record)) {
+                return "OK " + game.getMoveCount() + " GAMEOVER " + Move.mover(record);
+            }
+            return "OK " + game.getMoveCount() + (Move.isTransform(record) ? " TRANSFORM" : "");
+        }
+    }
+
+    /**
+     * Runs the load and prints a report
+     */
+    public void run(InetSocketAddress address, int sessions, int connections, long seconds) throws IOException {
+        Selector selector = Selector.open();
+        Client[] clients = new Client[connections];
+        for (int i = 0; i < connections; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            int share = sessions / connections + (i < sessions % connections ? 1 : 0);
+            clients[i] = new Client(channel, Math.max(share, 1));
+            channel.register(selector, SelectionKey.OP_READ, clients[i]);
+        }
+
+        // Create every session before timing moves
+        for (Client client : clients) {
+            client.sendNext();
+        }
+        int opened = 0;
+        while (opened < sessions) {
+            opened += pump(selector, true);
+        }
+        latencies.clear();
+        errors = 0;
+        for (Client client : clients) {
+            client.sendNext();
+        }
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            pump(selector, false);
+        }
+        long elapsed = System.nanoTime() - start;
+        selector.close();
+        for (Client client : clients) {
+            client.channel.close();
+        }
+        report(sessions, connections, elapsed);
+    }
+
+    // Handles one round of replies and sends each client its next command
+    private int pump(Selector selector, boolean counting) throws IOException {
+        selector.select(100);
+        int newSessions = 0;
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Client client = (Client) key.attachment();
+            if (client.read()) {
+                if (counting && client.pendingMove == Client.NEW) {
+                    newSessions++;
+                }
+                // While opening sessions a client stops once all of its own are open
+                if (!counting || client.unopened() >= 0) {
+                    client.sendNext();
+                }
+            }
+        }
+        return newSessions;
+    }
+
+    private void report(int sessions, int connections, long elapsedNanos) {
+        int[] sorted = latencies.toArray();
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%d sessions over %d connections, %.1f s%n", sessions, connections, seconds);
+        System.out.printf("moves %,d (%,.0f/s), games finished %,d, errors %d%n",
+            sorted.length, sorted.length / seconds, gamesFinished, errors);
+        if (sorted.length > 0) {
+            System.out.printf("move round trip: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted[sorted.length - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(int[] sorted, double fraction) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "local";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        long seconds = args.length > 4 ? Long.parseLong(args[4]) : 10;
+        int maxResident = args.length > 5 ? Integer.parseInt(args[5]) : GameServer.DEFAULT_MAX_RESIDENT;
+
+        GameServer server = null;
+        if (host.equals("local")) {
+            Path directory = Files.createTempDirectory("kwazam-sessions");
+            SessionStore store = new SessionStore(directory, maxResident, GameServer.DEFAULT_IDLE_MILLIS);
+            server = new GameServer(0, Runtime.getRuntime().availableProcessors(), store);
+            host = "localhost";
+            port = server.getPort();
+        }
+        try {
+            new LoadGenerator().run(new InetSocketAddress(host, port), sessions, connections, seconds);
+            if (server != null) {
+                System.out.println("server " + server.getSessions().getStats());
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+}
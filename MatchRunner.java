@@ -0,0 +1,188 @@
+/**
+ * Headless self-play tournament runner
+ */
+
+package engine;
+
+import archive.GameArchiveWriter;
+import model.GameManager;
+import model.PieceColor;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Plays many games between two kinds of Player with no Swing and no sound:
+ * moves go straight through GameManager.makeMove, which skips notation and audio.
+ * Games run concurrently on a fixed pool, one GameManager and one pair of players per game.
+ *
+ * Usage: java engine.MatchRunner [games] [threads] [random-engine|engine-engine|random-random] [engineNodes] [archive]
+ *
+ * With an archive path the games are also appended to that GameArchive.
+ */
+public class MatchRunner {
+    private final Supplier<Player> blue;
+    private final Supplier<Player> red;
+    private final int maxPlies;
+    private final int randomPlies;
+    private final AtomicLong seeds = new AtomicLong();
+
+    /**
+     * @param maxPlies games still running after this many plies are scored as draws
+     */
+    public MatchRunner(Supplier<Player> blue, Supplier<Player> red, int maxPlies) {
+        this(blue, red, maxPlies, 0);
+    }
+
+    /**
+     * @param randomPlies plies played at random before the players take over,
+     *     so deterministic players still produce different games
+     */
+    public MatchRunner(Supplier<Player> blue, Supplier<Player> red, int maxPlies, int randomPlies) {
+        this.blue = blue;
+        this.red = red;
+        this.maxPlies = maxPlies;
+        this.randomPlies = randomPlies;
+    }
+
+    /**
+     * Plays one game from the starting position on the calling thread
+     */
+    public GameResult playGame() {
+        long start = System.nanoTime();
+        GameManager game = new GameManager();
+        Player bluePlayer = blue.get();
+        Player redPlayer = red.get();
+        Player opening = Player.random(seeds.incrementAndGet());
+        int[] moves = new int[maxPlies];
+        int plies = 0;
+
+        while (!game.isGameEnded() && plies < maxPlies) {
+            Player player = game.getCurrentPlayer() == PieceColor.BLUE ? bluePlayer : redPlayer;
+            if (plies < randomPlies) {
+                player = opening;
+            }
+            int move = player.chooseMove(game);
+            if (move < 0) {
+                break;
+            }
+            game.makeMove(move);
+            moves[plies++] = move;
+        }
+
+        // After the Sau is captured the turn has already passed to the loser
+        PieceColor winner = null;
+        if (game.isGameEnded()) {
+            winner = game.getCurrentPlayer() == PieceColor.BLUE ? PieceColor.RED : PieceColor.BLUE;
+        }
+        return new GameResult(winner, Arrays.copyOf(moves, plies), System.nanoTime() - start);
+    }
+
+    /**
+     * Plays the given number of games on a pool of worker threads
+     * @return results in the order the games were scheduled
+     */
+    public List<GameResult> run(int games, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<GameResult>> futures = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                futures.add(pool.submit(this::playGame));
+            }
+
+            List<GameResult> results = new ArrayList<>(games);
+            for (Future<GameResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Game failed", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Prints wins, game lengths, per-game timing and throughput
+     */
+    public static void printSummary(List<GameResult> results, long wallNanos) {
+        int blueWins = 0;
+        int redWins = 0;
+        long totalPlies = 0;
+        long[] millis = new long[results.size()];
+        for (int i = 0; i < results.size(); i++) {
+            GameResult result = results.get(i);
+            if (result.getWinner() == PieceColor.BLUE) {
+                blueWins++;
+            } else if (result.getWinner() == PieceColor.RED) {
+                redWins++;
+            }
+            totalPlies += result.getPlies();
+            millis[i] = result.getNanos() / 1_000_000;
+        }
+        Arrays.sort(millis);
+
+        int games = results.size();
+        System.out.printf("games %d  blue %d  red %d  draws %d%n", games, blueWins, redWins, games - blueWins - redWins);
+        if (games == 0) {
+            return;
+        }
+        System.out.printf("average length %.1f plies%n", (double) totalPlies / games);
+        System.out.printf("game time ms  median %d  p99 %d  max %d%n",
+            millis[games / 2], millis[Math.min(games - 1, games * 99 / 100)], millis[games - 1]);
+        System.out.printf("wall %.1f s  %.1f games/s  %.0f plies/s%n", wallNanos / 1e9,
+            games * 1e9 / wallNanos, totalPlies * 1e9 / wallNanos);
+    }
+
+    /**
+     * Appends the games to an archive in result order
+     */
+    public static void archive(List<GameResult> results, GameArchiveWriter writer) throws IOException {
+        for (GameResult result : results) {
+            int[] moves = result.getMoves();
+            writer.append(moves, moves.length, result.getWinner());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String mode = args.length > 2 ? args[2] : "random-engine";
+        long engineNodes = args.length > 3 ? Long.parseLong(args[3]) : 2000;
+
+        AtomicLong seeds = new AtomicLong();
+        Supplier<Player> random = () -> Player.random(seeds.incrementAndGet());
+        Supplier<Player> engine = () -> Player.engine(SearchLimits.nodes(engineNodes));
+        Supplier<Player> blue;
+        Supplier<Player> red;
+        switch (mode) {
+            case "engine-engine": blue = engine; red = engine; break;
+            case "random-random": blue = random; red = random; break;
+            case "random-engine": blue = random; red = engine; break;
+            default: throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+
+        MatchRunner runner = new MatchRunner(blue, red, 400, mode.equals("engine-engine") ? 4 : 0);
+        long start = System.nanoTime();
+        List<GameResult> results = runner.run(games, threads);
+        printSummary(results, System.nanoTime() - start);
+
+        if (args.length > 4) {
+            try (GameArchiveWriter writer = new GameArchiveWriter(Paths.get(args[4]))) {
+                archive(results, writer);
+                System.out.printf("archived to %s (%d games)%n", args[4], writer.size());
+            }
+        }
+    }
+}
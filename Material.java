@@ -0,0 +1,290 @@
+/**
+ * Piece set of a tablebase and its position indexing
+ */
+
+package engine;
+
+import model.Attacks;
+import model.ChessBoard;
+import model.PieceColor;
+import model.PieceType;
+
+/**
+ * Which pieces each side has, and the mapping between positions with those
+ * pieces and table indices. Pieces are ordered Blue then Red, each side as
+ * Sau, Biz..., Ram..., Tor/Xor...; Tor and Xor count as one class since
+ * they turn into each other. A position index is
+ *
+ *   ((phase << flagBits | flags) * 40^n) + sum of square(i) * 40^i
+ *
+ * where phase is moveCount % 4 (its parity gives the side to move) and flags
+ * hold one bit per Ram (reversed) and per Tor/Xor (currently a Xor), in piece order.
+ * Names list each side's classes, e.g. "STvS" is Sau and Tor/Xor against a lone Sau.
+ */
+final class Material {
+    static final int SAU = 0;
+    static final int BIZ = 1;
+    static final int RAM = 2;
+    static final int TX = 3;
+    private static final String LETTERS = "SBRT";
+    private static final int SQUARES = ChessBoard.SQUARES;
+
+    private final String name;
+    private final int key;
+    private final int[] colors;
+    private final int[] classes;
+    // Bit of each piece in the flags, or -1 for Sau and Biz
+    private final int[] flagBits;
+    private final int flagCount;
+    private final long placements;
+    private final long size;
+
+    private Material(int[] counts) {
+        int pieces = 0;
+        for (int count : counts) {
+            pieces += count;
+        }
+        colors = new int[pieces];
+        classes = new int[pieces];
+        flagBits = new int[pieces];
+
+        StringBuilder text = new StringBuilder();
+        int keyBits = 0;
+        int piece = 0;
+        int flags = 0;
+        for (int color = 0; color < 2; color++) {
+            if (color == 1) {
+                text.append('v');
+            }
+            for (int pieceClass = SAU; pieceClass <= TX; pieceClass++) {
+                int count = counts[color * 4 + pieceClass];
+                keyBits |= count << ((color * 4 + pieceClass) * 3);
+                for (int i = 0; i < count; i++) {
+                    text.append(LETTERS.charAt(pieceClass));
+                    colors[piece] = color == 0 ? PieceColor.BLUE.ordinal() : PieceColor.RED.ordinal();
+                    classes[piece] = pieceClass;
+                    flagBits[piece] = pieceClass == RAM || pieceClass == TX ? flags++ : -1;
+                    piece++;
+                }
+            }
+        }
+        name = text.toString();
+        key = keyBits;
+        flagCount = flags;
+        long power = 1;
+        for (int i = 0; i < pieces; i++) {
+            power *= SQUARES;
+        }
+        placements = power;
+        size = placements * 4 << flagCount;
+    }
+
+    /**
+     * Parses a name such as "SBRvS"; both sides need exactly one Sau
+     */
+    static Material parse(String name) {
+        int split = name.indexOf('v');
+        if (split < 0) {
+            throw new IllegalArgumentException("Expected <blue>v<red>, e.g. STvS: " + name);
+        }
+        int[] counts = new int[8];
+        for (int i = 0; i < name.length(); i++) {
+            if (i == split) {
+                continue;
+            }
+            int pieceClass = LETTERS.indexOf(name.charAt(i));
+            if (pieceClass < 0) {
+                throw new IllegalArgumentException("Unknown piece letter '" + name.charAt(i) + "' in " + name);
+            }
+            counts[(i < split ? 0 : 4) + pieceClass]++;
+        }
+        return of(counts);
+    }
+
+    static Material of(int[] counts) {
+        for (int count : counts) {
+            if (count > 7) {
+                throw new IllegalArgumentException("Too many pieces of one kind");
+            }
+        }
+        if (counts[SAU] != 1 || counts[4 + SAU] != 1) {
+            throw new IllegalArgumentException("Each side needs exactly one Sau");
+        }
+        return new Material(counts);
+    }
+
+    /**
+     * Key of a board's material as returned by key(), without building a Material
+     */
+    static int keyOf(ChessBoard board) {
+        int key = 0;
+        for (int color = 0; color < 2; color++) {
+            long own = board.getColorMask(color == 0 ? PieceColor.BLUE : PieceColor.RED);
+            int shift = color * 12;
+            key |= Long.bitCount(own & board.getTypeMask(PieceType.SAU)) << shift;
+            key |= Long.bitCount(own & board.getTypeMask(PieceType.BIZ)) << (shift + 3);
+            key |= Long.bitCount(own & board.getTypeMask(PieceType.RAM)) << (shift + 6);
+            key |= Long.bitCount(own & (board.getTypeMask(PieceType.TOR) | board.getTypeMask(PieceType.XOR)))
+                << (shift + 9);
+        }
+        return key;
+    }
+
+    /**
+     * The same material with one piece removed, i.e. after it was captured
+     */
+    Material without(int piece) {
+        int[] counts = new int[8];
+        for (int i = 0; i < colors.length; i++) {
+            if (i != piece) {
+                counts[(colors[i] == PieceColor.BLUE.ordinal() ? 0 : 4) + classes[i]]++;
+            }
+        }
+        return new Material(counts);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getKey() {
+        return key;
+    }
+
+    int getPieces() {
+        return colors.length;
+    }
+
+    int getColor(int piece) {
+        return colors[piece];
+    }
+
+    int getPieceClass(int piece) {
+        return classes[piece];
+    }
+
+    int getFlagBit(int piece) {
+        return flagBits[piece];
+    }
+
+    /**
+     * Mask of the flag bits that belong to Tor/Xor pieces, flipped by a transform
+     */
+    int getTransformMask() {
+        int mask = 0;
+        for (int i = 0; i < classes.length; i++) {
+            if (classes[i] == TX) {
+                mask |= 1 << flagBits[i];
+            }
+        }
+        return mask;
+    }
+
+    long getPlacements() {
+        return placements;
+    }
+
+    /**
+     * Number of indices, including impossible ones with two pieces on a square
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * @param squares square of each piece in piece order; may be longer than getPieces()
+     */
+    long index(int[] squares, int flags, int phase) {
+        long index = 0;
+        for (int i = colors.length - 1; i >= 0; i--) {
+            index = index * SQUARES + squares[i];
+        }
+        return ((long) (phase << flagCount | flags)) * placements + index;
+    }
+
+    /**
+     * Writes the piece squares of an index
+     * @return false if two pieces share a square
+     */
+    boolean decode(long index, int[] squares) {
+        long placement = index % placements;
+        long occupied = 0;
+        for (int i = 0; i < squares.length; i++) {
+            squares[i] = (int) (placement % SQUARES);
+            placement /= SQUARES;
+            long bit = 1L << squares[i];
+            if ((occupied & bit) != 0) {
+                return false;
+            }
+            occupied |= bit;
+        }
+        return true;
+    }
+
+    int flags(long index) {
+        return (int) (index / placements) & ((1 << flagCount) - 1);
+    }
+
+    int phase(long index) {
+        return (int) (index / placements) >>> flagCount;
+    }
+
+    /**
+     * Squares the piece may move to, before removing its own side's pieces
+     */
+    long targets(int piece, int square, int flags, long occupied) {
+        switch (classes[piece]) {
+            case SAU:
+                return Attacks.sau(square);
+            case BIZ:
+                return Attacks.biz(square);
+            case RAM:
+                return Attacks.ram(PieceColor.values()[colors[piece]], (flags >>> flagBits[piece] & 1) != 0, square);
+            default:
+                return (flags >>> flagBits[piece] & 1) != 0 ? Attacks.xor(square, occupied) : Attacks.tor(square, occupied);
+        }
+    }
+
+    /**
+     * Index of a board position with this material
+     * @param squares scratch array of at least getPieces() entries, reused by the caller
+     * @return -1 if the side to move does not match the move count's parity
+     */
+    long index(ChessBoard board, PieceColor side, int moveCount, int[] squares) {
+        int phase = moveCount & 3;
+        if ((phase % 2 == 0) != (side == PieceColor.BLUE)) {
+            return -1;
+        }
+        int flags = 0;
+        int piece = 0;
+        for (int color = 0; color < 2; color++) {
+            long own = board.getColorMask(color == 0 ? PieceColor.BLUE : PieceColor.RED);
+            for (int pieceClass = SAU; pieceClass <= TX; pieceClass++) {
+                for (long bits = own & classMask(board, pieceClass); bits != 0; bits &= bits - 1) {
+                    int square = Long.numberOfTrailingZeros(bits);
+                    squares[piece] = square;
+                    boolean flag = pieceClass == RAM ? board.isRamReversed(square)
+                        : pieceClass == TX && board.getTypeAt(square) == PieceType.XOR;
+                    if (flag) {
+                        flags |= 1 << flagBits[piece];
+                    }
+                    piece++;
+                }
+            }
+        }
+        return index(squares, flags, phase);
+    }
+
+    private static long classMask(ChessBoard board, int pieceClass) {
+        switch (pieceClass) {
+            case SAU:
+                return board.getTypeMask(PieceType.SAU);
+            case BIZ:
+                return board.getTypeMask(PieceType.BIZ);
+            case RAM:
+                return board.getTypeMask(PieceType.RAM);
+            default:
+                return board.getTypeMask(PieceType.TOR) | board.getTypeMask(PieceType.XOR);
+        }
+    }
+}
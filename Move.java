@@ -0,0 +1,151 @@
+/**
+ * Packed int encoding of a single move
+ */
+
+package model;
+
+/**
+ * A move is stored in a plain int so generators can fill primitive buffers:
+ * bits 0-5 hold the from square and bits 6-11 the to square (square = row * COLS + col).
+ *
+ * The game history keeps a wider record of each played move in the same int:
+ * the move in bits 0-11, the moved type in bits 12-14, the captured type + 1
+ * in bits 15-17 (0 for none), then the mover's color and the transform and
+ * game-over flags. Notation is rendered from a record only when it is shown.
+ */
+public final class Move {
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int TO_SHIFT = 6;
+    private static final int MOVE_MASK = 0xFFF;
+    private static final int TYPE_MASK = 0x7;
+    private static final int MOVED_SHIFT = 12;
+    private static final int CAPTURED_SHIFT = 15;
+    private static final int BLUE_MOVED = 1 << 18;
+    private static final int TRANSFORMED = 1 << 19;
+    private static final int GAME_OVER = 1 << 20;
+    private static final PieceType[] TYPES = PieceType.values();
+
+    private Move() {
+    }
+
+    public static int of(int from, int to) {
+        return from | (to << TO_SHIFT);
+    }
+
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    public static int fromRow(int move) {
+        return from(move) / ChessBoard.COLS;
+    }
+
+    public static int fromCol(int move) {
+        return from(move) % ChessBoard.COLS;
+    }
+
+    public static int toRow(int move) {
+        return to(move) / ChessBoard.COLS;
+    }
+
+    public static int toCol(int move) {
+        return to(move) % ChessBoard.COLS;
+    }
+
+    /**
+     * Board coordinates as shown to players, e.g. A1 for the bottom-left square
+     */
+    public static String squareName(int square) {
+        return "" + (char) ('A' + square % ChessBoard.COLS) + (ChessBoard.ROWS - square / ChessBoard.COLS);
+    }
+
+    /**
+     * History record of a move
+     * @param captured null if the move is not a capture
+     */
+    public static int record(int move, PieceColor mover, PieceType moved, PieceType captured,
+                             boolean transformed, boolean gameOver) {
+        int record = (move & MOVE_MASK) | moved.ordinal() << MOVED_SHIFT;
+        if (captured != null) {
+            record |= (captured.ordinal() + 1) << CAPTURED_SHIFT;
+        }
+        if (mover == PieceColor.BLUE) {
+            record |= BLUE_MOVED;
+        }
+        if (transformed) {
+            record |= TRANSFORMED;
+        }
+        if (gameOver) {
+            record |= GAME_OVER;
+        }
+        return record;
+    }
+
+    /**
+     * The plain from/to move of a history record
+     */
+    public static int move(int record) {
+        return record & MOVE_MASK;
+    }
+
+    public static PieceColor mover(int record) {
+        return (record & BLUE_MOVED) != 0 ? PieceColor.BLUE : PieceColor.RED;
+    }
+
+    public static PieceType movedType(int record) {
+        return TYPES[(record >>> MOVED_SHIFT) & TYPE_MASK];
+    }
+
+    /**
+     * @return null if the move was not a capture
+     */
+    public static PieceType capturedType(int record) {
+        int captured = (record >>> CAPTURED_SHIFT) & TYPE_MASK;
+        return captured == 0 ? null : TYPES[captured - 1];
+    }
+
+    /**
+     * Whether Tor and Xor swapped after this move
+     */
+    public static boolean isTransform(int record) {
+        return (record & TRANSFORMED) != 0;
+    }
+
+    /**
+     * Whether this move captured a Sau and ended the game
+     */
+    public static boolean isGameOver(int record) {
+        return (record & GAME_OVER) != 0;
+    }
+
+    public static String toString(int move) {
+        return squareName(from(move)) + "-" + squareName(to(move));
+    }
+
+    /**
+     * Reads a move written by toString, e.g. "A2-A3" (the dash is optional)
+     * @return the move, or -1 if the text is not two squares on the board
+     */
+    public static int parse(CharSequence text) {
+        int length = text.length();
+        if (length != 4 && !(length == 5 && text.charAt(2) == '-')) {
+            return -1;
+        }
+        int from = parseSquare(text.charAt(0), text.charAt(1));
+        int to = parseSquare(text.charAt(length - 2), text.charAt(length - 1));
+        return from < 0 || to < 0 ? -1 : of(from, to);
+    }
+
+    private static int parseSquare(char file, char rank) {
+        int col = Character.toUpperCase(file) - 'A';
+        int row = ChessBoard.ROWS - (rank - '0');
+        if (col < 0 || col >= ChessBoard.COLS || row < 0 || row >= ChessBoard.ROWS) {
+            return -1;
+        }
+        return ChessBoard.square(row, col);
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Move generation on top of the bitboard representation
+ */
+
+package model;
+
+/**
+ * Writes legal moves as packed ints (see Move) into a caller-owned buffer,
+ * so repeated generation allocates nothing. Kwazam has no check rule,
+ * so every move a piece's pattern allows is legal.
+ */
+public final class MoveGenerator {
+    /** Upper bound on moves for one side; buffers of this size never overflow */
+    public static final int MAX_MOVES = 128;
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Generates every move for one side
+     * @return number of moves written from index 0
+     */
+    public static int generate(ChessBoard board, PieceColor side, int[] moves) {
+        return generate(board, side, moves, 0);
+    }
+
+    /**
+     * Generates every move for one side starting at the given offset,
+     * which lets a search keep all plies in one shared buffer
+     * @return index just past the last move written
+     */
+    public static int generate(ChessBoard board, PieceColor side, int[] moves, int offset) {
+        int count = offset;
+        for (long pieces = board.getColorMask(side); pieces != 0; pieces &= pieces - 1) {
+            count = generateFrom(board, Long.numberOfTrailingZeros(pieces), moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * Generates only the moves that capture an opponent piece
+     * @return index just past the last move written
+     */
+    public static int generateCaptures(ChessBoard board, PieceColor side, int[] moves, int offset) {
+        int count = offset;
+        long enemy = board.getColorMask(side == PieceColor.RED ? PieceColor.BLUE : PieceColor.RED);
+        for (long pieces = board.getColorMask(side); pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            for (long targets = board.getTargets(square) & enemy; targets != 0; targets &= targets - 1) {
+                moves[count++] = Move.of(square, Long.numberOfTrailingZeros(targets));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generates the moves of the piece standing on one square
+     * @return number of moves written from index 0
+     */
+    public static int generateFrom(ChessBoard board, int square, int[] moves) {
+        return generateFrom(board, square, moves, 0);
+    }
+
+    public static int generateFrom(ChessBoard board, int square, int[] moves, int offset) {
+        int count = offset;
+        for (long targets = board.getTargets(square); targets != 0; targets &= targets - 1) {
+            moves[count++] = Move.of(square, Long.numberOfTrailingZeros(targets));
+        }
+        return count;
+    }
+
+    /**
+     * Whether the side has any move at all
+     */
+    public static boolean hasMoves(ChessBoard board, PieceColor side) {
+        for (long pieces = board.getColorMask(side); pieces != 0; pieces &= pieces - 1) {
+            if (board.getTargets(Long.numberOfTrailingZeros(pieces)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,12 +1,21 @@
 package view;
 
+import model.GameManager;
+import model.IntList;
+import model.Move;
+
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class MoveHistoryPanel extends JPanel {
+    private static final int ROW_HEIGHT = 18;
+
     private JTextArea currentMovesArea;
-    private JTextArea historyArea;
+    private JList<String> historyList;
+    private HistoryModel historyModel;
 
     public MoveHistoryPanel() {
         setLayout(new BorderLayout(0, 10));
@@ -24,15 +33,27 @@ public class MoveHistoryPanel extends JPanel {
         currentScrollPane.setPreferredSize(new Dimension(300, 100));
         currentPanel.add(currentScrollPane);
 
-        // History panel - using a wider size
+        // History panel - a list with fixed row size only renders the visible rows
         JPanel historyPanel = new JPanel(new BorderLayout());
         historyPanel.setBorder(BorderFactory.createTitledBorder("Move History"));
-        historyArea = new JTextArea();
-        historyArea.setEditable(false);
-        historyArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        historyArea.setLineWrap(true);
-        historyArea.setWrapStyleWord(true);
-        JScrollPane historyScrollPane = new JScrollPane(historyArea);
+        historyModel = new HistoryModel();
+        historyList = new JList<>(historyModel);
+        historyList.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        historyList.setFixedCellHeight(ROW_HEIGHT);
+        historyList.setFixedCellWidth(280);
+        historyList.setFocusable(false);
+        ToolTipManager.sharedInstance().registerComponent(historyList);
+        historyList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                // The history is read-only, so rows never show as selected
+                super.getListCellRendererComponent(list, value, index, false, false);
+                setToolTipText(value.toString());
+                return this;
+            }
+        });
+        JScrollPane historyScrollPane = new JScrollPane(historyList);
         historyScrollPane.setPreferredSize(new Dimension(300, 300));
         historyPanel.add(historyScrollPane);
 
@@ -40,32 +61,124 @@ public class MoveHistoryPanel extends JPanel {
         add(historyPanel, BorderLayout.CENTER);
     }
 
-    public void updateHistory(List<String> moves) {
-        // Clear both areas
-        currentMovesArea.setText("");
-        historyArea.setText("");
-
-        // Show only the last move in current position with different format
-        if (!moves.isEmpty()) {
-            String lastMove = moves.get(moves.size() - 1);
-            if (lastMove.contains("transformed")) {
-                if (moves.size() >= 2) {
-                    currentMovesArea.append(moves.get(moves.size() - 2) + "\n");
+    /**
+     * Brings the display up to date with the game. Only the moves added or
+     * taken back since the last call are touched, and rows are rendered when scrolled into view.
+     */
+    public void updateHistory(GameManager game) {
+        boolean grew = historyModel.sync(game);
+
+        // Show only the last move in current position, with the transform note after it
+        int size = historyModel.getSize();
+        StringBuilder current = new StringBuilder();
+        if (size > 0) {
+            String lastMove = historyModel.getLine(size - 1);
+            if (lastMove.contains("transformed") && size >= 2) {
+                current.append(historyModel.getLine(size - 2)).append('\n');
+            }
+            current.append(lastMove);
+        }
+        currentMovesArea.setText(current.toString());
+
+        if (grew) {
+            historyList.ensureIndexIsVisible(size - 1);
+        }
+    }
+
+    /**
+     * History lines of a game, mirrored as packed records so that only
+     * the visible rows are ever turned into text
+     */
+    private static final class HistoryModel extends AbstractListModel<String> {
+        // Each line is the ply index shifted left once, plus 1 for a game over or transform note
+        private final IntList lines = new IntList();
+        private final IntList records = new IntList();
+        private GameManager game;
+        private List<String> loaded = Collections.emptyList();
+        private int loadedVersion;
+        private int historyVersion;
+
+        /**
+         * @return true if lines were added
+         */
+        boolean sync(GameManager newGame) {
+            int common = 0;
+            if (newGame == game && newGame.getLoadedHistoryVersion() == loadedVersion) {
+                int limit = Math.min(records.size(), newGame.getHistorySize());
+                if (newGame.getHistoryVersion() == historyVersion) {
+                    // Moves were only appended since the last call, so the records are still a prefix
+                    common = limit;
+                }
+                while (common < limit && records.get(common) == newGame.getHistoryRecord(common)) {
+                    common++;
                 }
-                currentMovesArea.append(lastMove);
             } else {
-                currentMovesArea.append(lastMove);
+                int removed = getSize();
+                lines.clear();
+                records.clear();
+                loaded = Collections.emptyList();
+                if (removed > 0) {
+                    fireIntervalRemoved(this, 0, removed - 1);
+                }
+                game = newGame;
+                loaded = new ArrayList<>(newGame.getLoadedHistory());
+                loadedVersion = newGame.getLoadedHistoryVersion();
+                if (!loaded.isEmpty()) {
+                    fireIntervalAdded(this, 0, loaded.size() - 1);
+                }
             }
+
+            historyVersion = newGame.getHistoryVersion();
+
+            // Drop moves that were taken back
+            int oldSize = getSize();
+            while (records.size() > common) {
+                records.removeLast();
+            }
+            while (!lines.isEmpty() && lines.get(lines.size() - 1) >>> 1 >= common) {
+                lines.removeLast();
+            }
+            if (getSize() < oldSize) {
+                fireIntervalRemoved(this, getSize(), oldSize - 1);
+            }
+
+            // Append the moves played since
+            int start = getSize();
+            for (int ply = common; ply < game.getHistorySize(); ply++) {
+                int record = game.getHistoryRecord(ply);
+                records.add(record);
+                lines.add(ply << 1);
+                if (Move.isGameOver(record) || Move.isTransform(record)) {
+                    lines.add(ply << 1 | 1);
+                }
+            }
+            if (getSize() > start) {
+                fireIntervalAdded(this, start, getSize() - 1);
+                return true;
+            }
+            return false;
         }
 
-        // Show full history with original format and numbers
-        for (int i = 0; i < moves.size(); i++) {
-            historyArea.append(String.format("%d. %s%n", i + 1, moves.get(i)));
+        @Override
+        public int getSize() {
+            return loaded.size() + lines.size();
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return (index + 1) + ". " + getLine(index);
         }
-    }
 
-    private String formatCurrentPosition(String move) {
-        // Keep the format as is, without numbering
-        return move;
+        String getLine(int index) {
+            if (index < loaded.size()) {
+                return loaded.get(index);
+            }
+            int line = lines.get(index - loaded.size());
+            int record = records.get(line >>> 1);
+            if ((line & 1) == 0) {
+                return game.describeMove(record);
+            }
+            return game.describeNote(record);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,219 @@
+/**
+ * Memory-mapped opening book
+ */
+
+package engine;
+
+import model.GameManager;
+import model.MoveGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Read-only opening book written by OpeningBookBuilder.
+ *
+ * Layout: "KWZO" magic, version int, entry count long, then fixed-size
+ * entries sorted by position hash (GameManager.getPositionHash) and move:
+ *   hash long, move short, 2 spare bytes, games int, wins int, draws int
+ * where wins and draws are from the point of view of the side that played the move.
+ *
+ * A probe is a binary search with absolute reads on the mapped file, so it
+ * touches a few cache lines, allocates only the returned list and is thread-safe.
+ */
+public class OpeningBook implements Closeable {
+    public static final String DEFAULT_FILE = "opening.kwb";
+
+    static final int MAGIC = 0x4B575A4F;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 24;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long entries;
+
+    /**
+     * One book move of a position with the results of the games that played it
+     */
+    public static final class Entry {
+        private final int move;
+        private final int games;
+        private final int wins;
+        private final int draws;
+
+        Entry(int move, int games, int wins, int draws) {
+            this.move = move;
+            this.games = games;
+            this.wins = wins;
+            this.draws = draws;
+        }
+
+        public int getMove() {
+            return move;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        /**
+         * Points per game for the side playing the move, 0 to 1
+         */
+        public double getScore() {
+            return (wins + draws * 0.5) / games;
+        }
+    }
+
+    public OpeningBook(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a Kwazam opening book");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            channel.close();
+            throw new IOException("Unsupported book version " + version);
+        }
+        entries = buffer.getLong(8);
+        if (HEADER_BYTES + entries * ENTRY_BYTES > buffer.limit()) {
+            channel.close();
+            throw new IOException("Truncated opening book");
+        }
+    }
+
+    /**
+     * Opens the default book in the working directory if there is one
+     * @return null if there is no readable book
+     */
+    public static OpeningBook openDefault() {
+        Path path = Paths.get(DEFAULT_FILE);
+        if (!Files.isReadable(path)) {
+            return null;
+        }
+        try {
+            return new OpeningBook(path);
+        } catch (IOException e) {
+            System.err.println("Error loading opening book: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public long size() {
+        return entries;
+    }
+
+    /**
+     * Book moves of a position, in move order
+     */
+    public List<Entry> probe(long hash) {
+        List<Entry> result = new ArrayList<>();
+        for (long i = lowerBound(hash); i < entries && hashAt(i) == hash; i++) {
+            int offset = offset(i);
+            result.add(new Entry(buffer.getShort(offset + 8) & 0xFFFF, buffer.getInt(offset + 12),
+                buffer.getInt(offset + 16), buffer.getInt(offset + 20)));
+        }
+        return result;
+    }
+
+    /**
+     * Picks a legal book move at random, weighted by the points it scored,
+     * ignoring moves seen in fewer than minGames games
+     * @return the packed move, or -1 if the position is not in the book
+     */
+    public int chooseMove(GameManager game, int minGames, SplittableRandom random) {
+        if (game.isGameEnded()) {
+            return -1;
+        }
+        List<Entry> candidates = probe(game.getPositionHash());
+        if (candidates.isEmpty()) {
+            return -1;
+        }
+
+        // A hash collision could suggest a move that is not legal here
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(game.getBoard(), game.getCurrentPlayer(), legal);
+        double total = 0;
+        double[] weights = new double[candidates.size()];
+        for (int i = 0; i < weights.length; i++) {
+            Entry entry = candidates.get(i);
+            if (entry.getGames() >= minGames && contains(legal, count, entry.getMove())) {
+                weights[i] = entry.getWins() * 2.0 + entry.getDraws();
+                total += weights[i];
+            }
+        }
+        if (total <= 0) {
+            return -1;
+        }
+
+        double pick = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            pick -= weights[i];
+            if (weights[i] > 0 && pick < 0) {
+                return candidates.get(i).getMove();
+            }
+        }
+        for (int i = weights.length - 1; i >= 0; i--) {
+            if (weights[i] > 0) {
+                return candidates.get(i).getMove();
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // First entry whose hash is not below the given one
+    private long lowerBound(long hash) {
+        long low = 0;
+        long high = entries;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (hashAt(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long hashAt(long index) {
+        return buffer.getLong(offset(index));
+    }
+
+    private static int offset(long index) {
+        return (int) (HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    private static boolean contains(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
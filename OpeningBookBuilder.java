@@ -0,0 +1,241 @@
+/**
+ * Builds an opening book from game archives
+ */
+
+package engine;
+
+import archive.GameArchiveReader;
+import model.GameManager;
+import model.Move;
+import model.PieceColor;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Replays the first plies of every archived game and counts, per position
+ * hash and move, how many games played it and how they ended. Each worker
+ * thread fills its own table from a slice of the archive; the tables are
+ * then merged, sorted by hash and move, and written in OpeningBook's layout.
+ *
+ * Usage: java engine.OpeningBookBuilder archive [book] [maxPlies] [minGames] [threads]
+ */
+public class OpeningBookBuilder {
+    private final int maxPlies;
+    private final int minGames;
+
+    /**
+     * @param maxPlies plies of each game that go into the book
+     * @param minGames moves played in fewer games are left out of the file
+     */
+    public OpeningBookBuilder(int maxPlies, int minGames) {
+        this.maxPlies = maxPlies;
+        this.minGames = minGames;
+    }
+
+    /**
+     * Counts all games of the archive on the given number of threads and writes the book
+     * @return number of entries written
+     */
+    public long build(GameArchiveReader archive, Path book, int threads) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Counts counts;
+        try {
+            long games = archive.size();
+            List<Future<Counts>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                long first = games * i / threads;
+                long last = games * (i + 1) / threads;
+                futures.add(pool.submit(() -> count(archive, first, last)));
+            }
+
+            counts = null;
+            for (Future<Counts> future : futures) {
+                Counts part;
+                try {
+                    part = future.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Book worker failed", e.getCause());
+                }
+                if (counts == null) {
+                    counts = part;
+                } else {
+                    counts.addAll(part);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return write(counts, book);
+    }
+
+    // Counts the opening plies of games [first, last)
+    private Counts count(GameArchiveReader archive, long first, long last) throws IOException {
+        Counts counts = new Counts();
+        int[] moves = new int[maxPlies];
+        GameManager game = new GameManager();
+        for (long id = first; id < last; id++) {
+            int plies = archive.readMoves(id, moves, maxPlies);
+            PieceColor winner = archive.getWinner(id);
+            for (int ply = 0; ply < plies; ply++) {
+                PieceColor mover = game.getCurrentPlayer();
+                counts.add(game.getPositionHash(), moves[ply], winner == null ? 0 : winner == mover ? 1 : -1);
+                game.makeMove(moves[ply]);
+            }
+            for (int ply = 0; ply < plies; ply++) {
+                game.unmakeMove();
+            }
+        }
+        return counts;
+    }
+
+    private long write(Counts counts, Path book) throws IOException {
+        int[] order = IntStream.range(0, counts.keys.length)
+            .filter(slot -> counts.games[slot] >= Math.max(1, minGames))
+            .boxed()
+            .parallel()
+            .sorted((a, b) -> counts.keys[a] != counts.keys[b] ? Long.compare(counts.keys[a], counts.keys[b])
+                : Integer.compare(counts.moves[a], counts.moves[b]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+        try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(book), 1 << 16)) {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeLong(order.length);
+            for (int slot : order) {
+                out.writeLong(counts.keys[slot]);
+                out.writeShort(counts.moves[slot]);
+                out.writeShort(0);
+                out.writeInt(counts.games[slot]);
+                out.writeInt(counts.wins[slot]);
+                out.writeInt(counts.draws[slot]);
+            }
+            out.flush();
+        }
+        return order.length;
+    }
+
+    /**
+     * Open-addressing table of (hash, move) counters in parallel primitive arrays.
+     * A slot is empty while its game count is 0.
+     */
+    private static final class Counts {
+        private long[] keys = new long[1 << 16];
+        private int[] moves = new int[keys.length];
+        private int[] games = new int[keys.length];
+        private int[] wins = new int[keys.length];
+        private int[] draws = new int[keys.length];
+        private int used;
+
+        /**
+         * @param outcome 1 if the mover won, 0 for a draw, -1 if the mover lost
+         */
+        void add(long hash, int move, int outcome) {
+            add(hash, move, 1, outcome > 0 ? 1 : 0, outcome == 0 ? 1 : 0);
+        }
+
+        void addAll(Counts other) {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.games[slot] != 0) {
+                    add(other.keys[slot], other.moves[slot], other.games[slot], other.wins[slot], other.draws[slot]);
+                }
+            }
+        }
+
+        private void add(long hash, int move, int gameCount, int winCount, int drawCount) {
+            if (used * 2 >= keys.length) {
+                grow();
+            }
+            int slot = find(hash, move);
+            if (games[slot] == 0) {
+                keys[slot] = hash;
+                moves[slot] = move;
+                used++;
+            }
+            games[slot] += gameCount;
+            wins[slot] += winCount;
+            draws[slot] += drawCount;
+        }
+
+        private int find(long hash, int move) {
+            int mask = keys.length - 1;
+            int slot = (int) ((hash ^ move * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (games[slot] != 0 && (keys[slot] != hash || moves[slot] != move)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldMoves = moves;
+            int[] oldGames = games;
+            int[] oldWins = wins;
+            int[] oldDraws = draws;
+            int size = oldKeys.length * 2;
+            keys = new long[size];
+            moves = new int[size];
+            games = new int[size];
+            wins = new int[size];
+            draws = new int[size];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldGames[i] != 0) {
+                    int slot = find(oldKeys[i], oldMoves[i]);
+                    keys[slot] = oldKeys[i];
+                    moves[slot] = oldMoves[i];
+                    games[slot] = oldGames[i];
+                    wins[slot] = oldWins[i];
+                    draws[slot] = oldDraws[i];
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path archivePath = Paths.get(args[0]);
+        Path bookPath = Paths.get(args.length > 1 ? args[1] : OpeningBook.DEFAULT_FILE);
+        int maxPlies = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+        int minGames = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        long entries;
+        try (GameArchiveReader archive = new GameArchiveReader(archivePath)) {
+            entries = new OpeningBookBuilder(maxPlies, minGames).build(archive, bookPath, threads);
+            System.out.printf("%d games -> %d entries in %.1f s%n", archive.size(), entries,
+                (System.nanoTime() - start) / 1e9);
+        }
+
+        try (OpeningBook book = new OpeningBook(bookPath)) {
+            GameManager game = new GameManager();
+            for (OpeningBook.Entry entry : book.probe(game.getPositionHash())) {
+                System.out.printf("%s  games %d  score %.3f%n", Move.toString(entry.getMove()),
+                    entry.getGames(), entry.getScore());
+            }
+
+            int probes = 1_000_000;
+            SplittableRandom random = new SplittableRandom(1);
+            long hits = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < probes; i++) {
+                hits += book.probe(i % 2 == 0 ? game.getPositionHash() : random.nextLong()).size();
+            }
+            System.out.printf("probe %.2f us (%d hits)%n", (System.nanoTime() - start) / 1e3 / probes, hits);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Multi-threaded search over a shared transposition table
+ */
+
+package engine;
+
+import model.GameManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lazy SMP: every thread runs its own SearchEngine on the same root and they
+ * only cooperate through one shared TranspositionTable. Helpers start their
+ * iterative deepening at staggered depths so they fill the table ahead of the
+ * main thread, whose result is the one returned. With one thread this is
+ * exactly SearchEngine, which keeps depth- and node-limited searches deterministic.
+ *
+ * Usage: java engine.ParallelSearch [depth] [maxThreads]
+ */
+public class ParallelSearch implements AutoCloseable {
+    private final TranspositionTable table;
+    private final SearchEngine[] engines;
+    private final ExecutorService helpers;
+
+    public ParallelSearch(int threads, int tableMb) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        table = new TranspositionTable(tableMb);
+        engines = new SearchEngine[threads];
+        for (int i = 0; i < threads; i++) {
+            engines[i] = new SearchEngine(table);
+        }
+        helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Searches on all threads until the main thread reaches a limit
+     * @return the main thread's result with nodes summed over all threads
+     */
+    public SearchResult search(GameManager position, SearchLimits limits) {
+        if (helpers == null || engines[0].bookMove(position) >= 0) {
+            return engines[0].search(position, limits);
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        SearchLimits helperLimits = SearchLimits.depth(SearchEngine.MAX_PLY - 1);
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 1; i < engines.length; i++) {
+            SearchEngine helper = engines[i];
+            int firstDepth = 1 + i % 2;
+            running.add(helpers.submit(() -> helper.search(position, helperLimits, firstDepth, done)));
+        }
+
+        SearchResult main;
+        try {
+            main = engines[0].search(position, limits);
+        } finally {
+            done.set(true);
+        }
+
+        long nodes = main.getNodes();
+        for (int i = 0; i < running.size(); i++) {
+            try {
+                running.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Helper search failed", e.getCause());
+            }
+            nodes += engines[i + 1].getNodes();
+        }
+        return new SearchResult(main.getBestMove(), main.getScore(), main.getDepth(),
+            nodes, main.getMillis(), main.getPv());
+    }
+
+    /**
+     * @param book null to always search
+     */
+    public void setOpeningBook(OpeningBook book) {
+        engines[0].setOpeningBook(book);
+    }
+
+    /**
+     * @param tablebase null to search endings like any other position
+     */
+    public void setTablebase(Tablebase tablebase) {
+        for (SearchEngine engine : engines) {
+            engine.setTablebase(tablebase);
+        }
+    }
+
+    /**
+     * Asks a running search to return as soon as possible
+     */
+    public void stop() {
+        engines[0].stop();
+    }
+
+    /**
+     * Forgets everything learned so far, e.g. before a reproducible search
+     */
+    public void clear() {
+        table.clear();
+    }
+
+    public int getThreads() {
+        return engines.length;
+    }
+
+    @Override
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * Time-to-depth benchmark from the starting position for 1, 2, 4 ... threads
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.println("threads  depth     time(ms)  speedup       nodes/s  nodes/s/thread");
+        long baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            try (ParallelSearch search = new ParallelSearch(threads, 64)) {
+                long start = System.nanoTime();
+                SearchResult result = search.search(new GameManager(), SearchLimits.depth(depth));
+                long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+                if (threads == 1) {
+                    baseline = millis;
+                }
+                long nodesPerSecond = result.getNodes() * 1000 / millis;
+                System.out.printf("%7d %6d %12d %8.2f %13d %15d%n", threads, result.getDepth(), millis,
+                    (double) baseline / millis, nodesPerSecond, nodesPerSecond / threads);
+            }
+        }
+    }
+}
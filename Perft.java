@@ -0,0 +1,154 @@
+/**
+ * Perft driver and move generation benchmark
+ */
+
+package engine;
+
+import model.GameManager;
+import model.Move;
+import model.MoveGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the game tree to a fixed depth, using
+ * MoveGenerator and GameManager.makeMove/unmakeMove so the 4-move Tor/Xor
+ * transform and Ram reversal are included. A position where a Sau was
+ * captured is terminal and is not expanded further.
+ *
+ * Usage: java engine.Perft depth [saveFile] [threads]
+ */
+public final class Perft {
+    private Perft() {
+    }
+
+    /**
+     * Leaf node count of the tree below the game's current position
+     */
+    public static long perft(GameManager game, int depth) {
+        return perft(game, depth, new int[MoveGenerator.MAX_MOVES * Math.max(depth, 1)], 0);
+    }
+
+    private static long perft(GameManager game, int depth, int[] moves, int offset) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (game.isGameEnded()) {
+            return 0;
+        }
+
+        int end = MoveGenerator.generate(game.getBoard(), game.getCurrentPlayer(), moves, offset);
+        if (depth == 1) {
+            return end - offset;
+        }
+
+        long nodes = 0;
+        for (int i = offset; i < end; i++) {
+            game.makeMove(moves[i]);
+            nodes += perft(game, depth - 1, moves, end);
+            game.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Node count per root move ("divide"), in generation order
+     * @return pairs of {move, nodes}
+     */
+    public static List<long[]> divide(GameManager game, int depth) {
+        List<long[]> result = new ArrayList<>();
+        if (depth < 1 || game.isGameEnded()) {
+            return result;
+        }
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES * depth];
+        int count = MoveGenerator.generate(game.getBoard(), game.getCurrentPlayer(), moves);
+        for (int i = 0; i < count; i++) {
+            game.makeMove(moves[i]);
+            result.add(new long[] {moves[i], perft(game, depth - 1, moves, count)});
+            game.unmakeMove();
+        }
+        return result;
+    }
+
+    /**
+     * Same count as perft, with each root move searched on its own copy of the game
+     */
+    public static long perftParallel(GameManager game, int depth, ForkJoinPool pool) {
+        if (depth < 2 || game.isGameEnded()) {
+            return perft(game, depth);
+        }
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(game.getBoard(), game.getCurrentPlayer(), moves);
+        List<RootTask> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(new RootTask(game, moves[i], depth - 1));
+        }
+        return pool.submit(() -> {
+            long nodes = 0;
+            for (RootTask task : RecursiveTask.invokeAll(tasks)) {
+                nodes += task.join();
+            }
+            return nodes;
+        }).join();
+    }
+
+    private static final class RootTask extends RecursiveTask<Long> {
+        private final GameManager game;
+        private final int depth;
+
+        RootTask(GameManager root, int move, int depth) {
+            this.game = new GameManager(root);
+            this.game.makeMove(move);
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            return perft(game, depth);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        GameManager game = new GameManager();
+        if (args.length > 1) {
+            game.loadGame(args[1]);
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.println("depth        nodes     time(ms)       nodes/s");
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long start = System.nanoTime();
+            long nodes = perft(game, depth);
+            printRow(depth, nodes, System.nanoTime() - start);
+        }
+
+        System.out.println();
+        System.out.println("divide " + maxDepth);
+        for (long[] entry : divide(game, maxDepth)) {
+            System.out.printf("%s: %d%n", Move.toString((int) entry[0]), entry[1]);
+        }
+
+        System.out.println();
+        System.out.println("parallel (" + threads + " threads)");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            long nodes = perftParallel(game, maxDepth, pool);
+            printRow(maxDepth, nodes, System.nanoTime() - start);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void printRow(int depth, long nodes, long nanos) {
+        long nodesPerSecond = nanos > 0 ? (long) (nodes * 1e9 / nanos) : 0;
+        System.out.printf("%5d %12d %12.1f %13d%n", depth, nodes, nanos / 1e6, nodesPerSecond);
+    }
+}
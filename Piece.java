@@ -5,20 +5,42 @@
 package model;
 
 /**
- * Defines common behavior and properties for all chess pieces
+ * Defines common behavior and properties for all chess pieces.
+ * Pieces are immutable flyweights, one per type and color, obtained from Piece.of;
+ * anything that changes during a game (such as a Ram's direction) lives in ChessBoard.
  * @author Aleesya
  */
 public abstract class Piece {
-    protected PieceColor color;
+    private static final Piece[][] PIECES = new Piece[PieceType.values().length][PieceColor.values().length];
 
-    public Piece(PieceColor color) {
+    static {
+        for (PieceColor color : PieceColor.values()) {
+            PIECES[PieceType.RAM.ordinal()][color.ordinal()] = new RamPiece(color);
+            PIECES[PieceType.BIZ.ordinal()][color.ordinal()] = new BizPiece(color);
+            PIECES[PieceType.SAU.ordinal()][color.ordinal()] = new SauPiece(color);
+            PIECES[PieceType.TOR.ordinal()][color.ordinal()] = new TorPiece(color);
+            PIECES[PieceType.XOR.ordinal()][color.ordinal()] = new XorPiece(color);
+        }
+    }
+
+    protected final PieceColor color;
+
+    Piece(PieceColor color) {
         this.color = color;
     }
 
+    /**
+     * The shared instance for a type and color
+     */
+    public static Piece of(PieceType type, PieceColor color) {
+        return PIECES[type.ordinal()][color.ordinal()];
+    }
+
     public PieceColor getColor() {
         return color;
     }
 
+    public abstract PieceType getType();
     public abstract boolean canMove(ChessBoard board, int fromRow, int fromCol, int toRow, int toCol);
     public abstract String getImagePath();
 }
\ No newline at end of file
@@ -0,0 +1,5 @@
+package model;
+
+public enum PieceType {
+    RAM, BIZ, SAU, TOR, XOR
+}
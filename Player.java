@@ -0,0 +1,41 @@
+/**
+ * Move choosers for headless games
+ */
+
+package engine;
+
+import model.GameManager;
+import model.MoveGenerator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Picks a move for the side to move. Implementations keep per-game state
+ * (buffers, search tables), so each game gets its own instances.
+ */
+public interface Player {
+    /**
+     * @return the packed move to play, or -1 if there is none
+     */
+    int chooseMove(GameManager game);
+
+    /**
+     * Plays a uniformly random legal move
+     */
+    static Player random(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        return game -> {
+            int count = MoveGenerator.generate(game.getBoard(), game.getCurrentPlayer(), moves);
+            return count == 0 ? -1 : moves[random.nextInt(count)];
+        };
+    }
+
+    /**
+     * Plays the engine's best move within the given limits
+     */
+    static Player engine(SearchLimits limits) {
+        SearchEngine engine = new SearchEngine(new TranspositionTable(4));
+        return game -> engine.search(game, limits).getBestMove();
+    }
+}
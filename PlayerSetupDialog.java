@@ -14,6 +14,7 @@ public class PlayerSetupDialog extends JDialog {
     private String player2Name = "";
     private Image backgroundImage;
     private boolean isConfirmed = false;
+    private boolean isComputerOpponent = false;
 
     public PlayerSetupDialog(JFrame parent) {
         super(parent, "Player Setup", true);
@@ -52,6 +53,15 @@ public class PlayerSetupDialog extends JDialog {
         redPlayerPanel.add(player2Field); // Add text field to the red panel
         panel.add(redPlayerPanel);
 
+        JCheckBox computerBox = new JCheckBox("Computer plays Red");
+        computerBox.setFont(new Font("Arial", Font.BOLD, 14));
+        computerBox.addActionListener(e -> {
+            if (computerBox.isSelected() && player2Field.getText().trim().isEmpty()) {
+                player2Field.setText("Computer");
+            }
+        });
+        panel.add(computerBox);
+
         add(panel, BorderLayout.CENTER);
 
         JPanel buttonPanel = new JPanel();
@@ -72,6 +82,7 @@ public class PlayerSetupDialog extends JDialog {
 
             player1Name = player1Input;
             player2Name = player2Input;
+            isComputerOpponent = computerBox.isSelected();
             isConfirmed = true;
             dispose();
         });
@@ -95,6 +106,10 @@ public class PlayerSetupDialog extends JDialog {
         return player2Name;
     }
 
+    public boolean isComputerOpponent() {
+        return isComputerOpponent;
+    }
+
     public boolean isConfirmed() {
         return isConfirmed;
     }
@@ -5,14 +5,14 @@
 
 package model;
 
+/**
+ * RAM piece moves one square along its column, forward until it reaches the far row,
+ * then backward. Whether it has turned around is kept by the board (ChessBoard.isRamReversed).
+ * @author Aleesya
+ */
 public class RamPiece extends Piece {
-    private boolean isMovingForward;
-    private boolean hasReachedEnd;
-
-    public RamPiece(PieceColor color) {
+    RamPiece(PieceColor color) {
         super(color);
-        this.isMovingForward = true;
-        this.hasReachedEnd = false;
     }
 
     /**
@@ -24,89 +24,28 @@ public class RamPiece extends Piece {
      */
     @Override
     public boolean canMove(ChessBoard board, int fromRow, int fromCol, int toRow, int toCol) {
-        // Must stay in same column
-        if (fromCol != toCol) {
-            return false;
-        }
-
-        // Get movement direction based on color and current direction
-        int direction = getMovementDirection();
-
-        // Validate movement is one step in correct direction
-        if (toRow - fromRow != direction) {
-            return false;
-        }
-
-        // Check if target position is empty or contains enemy piece
-        Piece targetPiece = board.getPiece(toRow, toCol);
-        if (targetPiece != null && targetPiece.getColor() == this.color) {
-            return false;
-        }
-
-        // Check if the piece will reach the end with this move
-        boolean willReachEnd = (color == PieceColor.RED && toRow == 7) ||
-            (color == PieceColor.BLUE && toRow == 0);
-
-        // Only allow movement in these cases:
-        // 1. Moving forward (not reached end yet)
-        // 2. Already reached end AND moving backward
-        if (isMovingForward && !hasReachedEnd) {
-            if (willReachEnd) {
-                // Will automatically set hasReachedEnd and flip direction after move
-                return true;
-            }
-            return true;
-        } else if (!isMovingForward && hasReachedEnd) {
-            return true;
-        }
-
-        return false;
-    }
-
-    // Called after a successful move to handle end-of-board logic
-    // Basically updates piece state after reaching board end
-    public void handleMove(int newRow) {
-        if (!hasReachedEnd && isMovingForward) {
-            // Check if this move reached the end
-            if ((color == PieceColor.RED && newRow == 7) ||
-            (color == PieceColor.BLUE && newRow == 0)) {
-                hasReachedEnd = true;
-                isMovingForward = false;
-            }
-        }
+        // One step in the current direction along the column, never onto a friendly piece.
+        // Before reaching the end the Ram moves forward, afterwards it moves backward.
+        int from = ChessBoard.square(fromRow, fromCol);
+        long push = Attacks.ram(color, board.isRamReversed(from), from);
+        return (push & ~board.getColorMask(color) & (1L << ChessBoard.square(toRow, toCol))) != 0;
     }
 
-    private int getMovementDirection() {
-        if (color == PieceColor.RED) {
-            return isMovingForward ? 1 : -1;
-        } else {
-            return isMovingForward ? -1 : 1;
-        }
+    @Override
+    public PieceType getType() {
+        return PieceType.RAM;
     }
 
     @Override
     public String getImagePath() {
+        return getImagePath(false);
+    }
+
+    public String getImagePath(boolean reversed) {
         if (color == PieceColor.RED) {
-            return hasReachedEnd ? "redRAM_flipped.png" : "redRAM.png";
+            return reversed ? "redRAM_flipped.png" : "redRAM.png";
         } else {
-            return hasReachedEnd ? "blueRAM_flipped.png" : "blueRAM.png";
+            return reversed ? "blueRAM_flipped.png" : "blueRAM.png";
         }
     }
-
-    // Getters and setters
-    public boolean isMovingForward() {
-        return isMovingForward;
-    }
-
-    public boolean hasReachedEnd() {
-        return hasReachedEnd;
-    }
-
-    public void setMovingForward(boolean forward) {
-        this.isMovingForward = forward;
-    }
-
-    public void setHasReachedEnd(boolean reached) {
-        this.hasReachedEnd = reached;
-    }
-}
\ No newline at end of file
+}
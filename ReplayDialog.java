@@ -0,0 +1,76 @@
+package view;
+
+import model.GameReplay;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Steps and scrubs through the moves of the current game without touching it.
+ * The slider seeks a GameReplay, so dragging across a long game only replays a
+ * few moves per frame and the board repaints just the squares that changed.
+ */
+public class ReplayDialog extends JDialog {
+    private static final int CELL_SIZE = 60;
+
+    private final GameReplay replay;
+    private final boolean flipped;
+    private final BoardPanel boardPanel;
+    private final JSlider slider;
+    private final JLabel moveLabel;
+
+    /**
+     * @param flipped whether Red's side is at the bottom, as on the main board
+     */
+    public ReplayDialog(Frame owner, GameReplay replay, boolean flipped) {
+        super(owner, "Replay", false);
+        this.replay = replay;
+        this.flipped = flipped;
+
+        JPanel mainPanel = new JPanel(new BorderLayout(0, 10));
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        moveLabel = new JLabel(" ", SwingConstants.CENTER);
+        moveLabel.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        mainPanel.add(moveLabel, BorderLayout.NORTH);
+
+        // Clicks do nothing in a replay
+        boardPanel = new BoardPanel(CELL_SIZE, (row, col) -> { });
+        mainPanel.add(boardPanel, BorderLayout.CENTER);
+
+        slider = new JSlider(0, replay.getPlies(), replay.getPly());
+        slider.addChangeListener(e -> showPly(slider.getValue()));
+
+        JButton firstButton = new JButton("|<");
+        JButton previousButton = new JButton("<");
+        JButton nextButton = new JButton(">");
+        JButton lastButton = new JButton(">|");
+        firstButton.addActionListener(e -> slider.setValue(0));
+        previousButton.addActionListener(e -> slider.setValue(slider.getValue() - 1));
+        nextButton.addActionListener(e -> slider.setValue(slider.getValue() + 1));
+        lastButton.addActionListener(e -> slider.setValue(replay.getPlies()));
+
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.add(firstButton);
+        buttonPanel.add(previousButton);
+        buttonPanel.add(nextButton);
+        buttonPanel.add(lastButton);
+
+        JPanel controlPanel = new JPanel(new BorderLayout());
+        controlPanel.add(slider, BorderLayout.NORTH);
+        controlPanel.add(buttonPanel, BorderLayout.SOUTH);
+        mainPanel.add(controlPanel, BorderLayout.SOUTH);
+
+        add(mainPanel);
+        showPly(replay.getPly());
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    private void showPly(int ply) {
+        replay.seek(ply);
+        boardPanel.update(replay.getBoard(), flipped);
+        String move = ply == 0 ? "Start" : replay.describeMove(ply);
+        moveLabel.setText("Ply " + ply + " / " + replay.getPlies() + "   " + move);
+    }
+}
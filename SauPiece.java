@@ -10,21 +10,19 @@ package model;
  * @author Aleesya
  */
 public class SauPiece extends Piece {
-    public SauPiece(PieceColor color) {
+    SauPiece(PieceColor color) {
         super(color);
     }
 
     @Override
     public boolean canMove(ChessBoard board, int fromRow, int fromCol, int toRow, int toCol) {
-        int rowDiff = Math.abs(toRow - fromRow);
-        int colDiff = Math.abs(toCol - fromCol);
-
-        if (rowDiff <= 1 && colDiff <= 1) {
-            Piece targetPiece = board.getPiece(toRow, toCol);
-            return targetPiece == null || targetPiece.getColor() != this.color;
-        }
+        long targets = Attacks.sau(ChessBoard.square(fromRow, fromCol)) & ~board.getColorMask(color);
+        return (targets & (1L << ChessBoard.square(toRow, toCol))) != 0;
+    }
 
-        return false;
+    @Override
+    public PieceType getType() {
+        return PieceType.SAU;
     }
 
     @Override
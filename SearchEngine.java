@@ -0,0 +1,461 @@
+/**
+ * Alpha-beta search engine for the computer opponent
+ */
+
+package engine;
+
+import model.ChessBoard;
+import model.Evaluation;
+import model.GameManager;
+import model.Move;
+import model.MoveGenerator;
+import model.PieceColor;
+import model.PieceType;
+import util.FlightEvents;
+import util.Metrics;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Negamax alpha-beta with iterative deepening, aspiration windows,
+ * principal variation search, a transposition table and a capture-only
+ * quiescence search. Capturing a Sau ends the game, so a position where
+ * the side to move has lost its Sau scores as a loss at that ply.
+ *
+ * Searches run on a private copy of the game, so the caller's game
+ * and its undo history are never touched. With an opening book set,
+ * positions found in the book are answered from it without searching.
+ * With a tablebase set, every node below the root that it covers is
+ * scored exactly from it as a mate that many plies away.
+ */
+public class SearchEngine {
+    public static final int MAX_PLY = 64;
+    public static final int MATE = 30000;
+    public static final int MATE_BOUND = MATE - MAX_PLY;
+    private static final int INFINITY = MATE + 1;
+    private static final int ASPIRATION_WINDOW = 40;
+    private static final int[] ORDER_VALUES = {100, 300, 10000, 500, 330};
+    private static final int BOOK_MIN_GAMES = 3;
+    // Longest tablebase win scored by its distance; scores beyond WIN_BOUND are
+    // wins or losses a known number of plies from the root, like mates
+    private static final int MAX_TABLEBASE_DISTANCE = MATE / 2;
+    private static final int WIN_BOUND = MATE - MAX_TABLEBASE_DISTANCE;
+    private static final Metrics.Histogram SEARCH_TIME = Metrics.histogram("engine.search");
+    private static final Metrics.Histogram SEARCH_DEPTH = Metrics.histogram("engine.depth");
+    private static final Metrics.Histogram SEARCH_NPS = Metrics.histogram("engine.nodesPerSecond");
+    private static final Metrics.Counter SEARCH_NODES = Metrics.counter("engine.nodes");
+
+    private final TranspositionTable table;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES * (MAX_PLY + 1)];
+    private final int[] orderScores = new int[moves.length];
+    private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+
+    private GameManager game;
+    private long nodes;
+    private long maxNodes;
+    private long deadline;
+    private boolean checkLimits;
+    private volatile boolean stopped;
+    private AtomicBoolean stopSignal;
+    private OpeningBook book;
+    private final SplittableRandom bookRandom = new SplittableRandom();
+    private Tablebase tablebase;
+    // Scratch for tablebase probes
+    private int[] tablebaseSquares = new int[0];
+
+    public SearchEngine() {
+        this(new TranspositionTable(32));
+    }
+
+    public SearchEngine(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Asks a running search to return as soon as possible
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * @param book null to always search
+     */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * @param tablebase null to search endings like any other position
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+        tablebaseSquares = new int[tablebase == null ? 0 : tablebase.getMaxPieces()];
+    }
+
+    /**
+     * Searches the game's current position until a limit is reached,
+     * unless the opening book has a move for it
+     */
+    public SearchResult search(GameManager position, SearchLimits limits) {
+        int move = bookMove(position);
+        if (move >= 0) {
+            return new SearchResult(move, 0, 0, 0, 0, new int[] {move});
+        }
+        return search(position, limits, 1, null);
+    }
+
+    /**
+     * @return a book move for the position, or -1 if there is no book or no entry
+     */
+    int bookMove(GameManager position) {
+        return book == null ? -1 : book.chooseMove(position, BOOK_MIN_GAMES, bookRandom);
+    }
+
+    /**
+     * Search for a helper thread: iterative deepening starts at firstDepth
+     * and the search also stops once the shared signal is raised
+     */
+    SearchResult search(GameManager position, SearchLimits limits, int firstDepth, AtomicBoolean signal) {
+        if (!Metrics.ENABLED) {
+            return deepen(position, limits, firstDepth, signal);
+        }
+        FlightEvents.SearchEvent event = new FlightEvents.SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        SearchResult result = deepen(position, limits, firstDepth, signal);
+        SEARCH_TIME.recordSince(start);
+        SEARCH_DEPTH.record(result.getDepth());
+        SEARCH_NPS.record(result.getNodesPerSecond());
+        SEARCH_NODES.add(result.getNodes());
+        if (event.shouldCommit()) {
+            event.depth = result.getDepth();
+            event.nodes = result.getNodes();
+            event.nodesPerSecond = result.getNodesPerSecond();
+            event.score = result.getScore();
+            event.bestMove = result.getBestMove() >= 0 ? Move.toString(result.getBestMove()) : null;
+            event.commit();
+        }
+        return result;
+    }
+
+    private SearchResult deepen(GameManager position, SearchLimits limits, int firstDepth, AtomicBoolean signal) {
+        long start = System.currentTimeMillis();
+        game = new GameManager(position);
+        nodes = 0;
+        maxNodes = limits.getMaxNodes();
+        deadline = limits.getMaxMillis() == Long.MAX_VALUE ? Long.MAX_VALUE : start + limits.getMaxMillis();
+        stopped = false;
+        stopSignal = signal;
+        checkLimits = signal != null;
+        for (int[] pair : killers) {
+            pair[0] = -1;
+            pair[1] = -1;
+        }
+
+        int count = MoveGenerator.generate(game.getBoard(), game.getCurrentPlayer(), moves);
+        if (game.isGameEnded() || count == 0) {
+            return new SearchResult(-1, game.isGameEnded() ? -MATE : 0, 0, 0, 0, new int[0]);
+        }
+
+        SearchResult result = new SearchResult(moves[0], 0, 0, 0, 0, new int[] {moves[0]});
+        int score = 0;
+        for (int depth = firstDepth; depth <= limits.getMaxDepth(); depth++) {
+            score = searchRoot(depth, score);
+            if (stopped) {
+                break;
+            }
+
+            int[] pv = new int[pvLength[0]];
+            System.arraycopy(pvTable[0], 0, pv, 0, pv.length);
+            result = new SearchResult(pv[0], score, depth, nodes, System.currentTimeMillis() - start, pv);
+            // The first iteration always completes so there is a move to play
+            checkLimits = true;
+            if (Math.abs(score) >= MATE_BOUND && MATE - Math.abs(score) <= depth) {
+                break;
+            }
+        }
+        return new SearchResult(result.getBestMove(), result.getScore(), result.getDepth(),
+            nodes, System.currentTimeMillis() - start, result.getPv());
+    }
+
+    // One iteration, starting with a narrow window around the previous score
+    private int searchRoot(int depth, int previous) {
+        if (depth < 4 || Math.abs(previous) >= MATE_BOUND) {
+            return search(depth, 0, -INFINITY, INFINITY);
+        }
+
+        int delta = ASPIRATION_WINDOW;
+        int alpha = previous - delta;
+        int beta = previous + delta;
+        while (true) {
+            int score = search(depth, 0, alpha, beta);
+            if (stopped) {
+                return score;
+            }
+            if (score <= alpha) {
+                alpha = Math.max(score - delta, -INFINITY);
+            } else if (score >= beta) {
+                beta = Math.min(score + delta, INFINITY);
+            } else {
+                return score;
+            }
+            delta *= 2;
+        }
+    }
+
+    private int search(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if (game.isGameEnded()) {
+            // The previous move captured our Sau
+            return -MATE + ply;
+        }
+        int known = probeTablebase(ply);
+        if (known != Tablebase.UNKNOWN) {
+            return known;
+        }
+        if (depth <= 0) {
+            return quiesce(ply, alpha, beta);
+        }
+        if (isOutOfBudget()) {
+            return 0;
+        }
+        nodes++;
+        if (ply >= MAX_PLY) {
+            return Evaluation.evaluate(game);
+        }
+
+        boolean pvNode = beta - alpha > 1;
+        long key = game.getPositionHash();
+        long entry = table.probe(key);
+        int hashMove = -1;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            int stored = fromTable(TranspositionTable.score(entry), ply);
+            if (!pvNode && TranspositionTable.depth(entry) >= depth) {
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER && stored >= beta)
+                    || (bound == TranspositionTable.UPPER && stored <= alpha)) {
+                    return stored;
+                }
+            }
+        }
+
+        int offset = ply * MoveGenerator.MAX_MOVES;
+        int end = MoveGenerator.generate(game.getBoard(), game.getCurrentPlayer(), moves, offset);
+        if (end == offset) {
+            // No move at all; the game cannot go on, count it as a draw
+            return 0;
+        }
+        scoreMoves(offset, end, hashMove, ply);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = moves[offset];
+        for (int i = offset; i < end; i++) {
+            int move = pickNext(i, end);
+            boolean capture = isCapture(move);
+
+            game.makeMove(move);
+            int score;
+            if (i == offset) {
+                score = -search(depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                score = -search(depth - 1, ply + 1, -alpha - 1, -alpha);
+                if (score > alpha && score < beta) {
+                    score = -search(depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            game.unmakeMove();
+
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (alpha >= beta) {
+                        if (!capture && killers[ply][0] != move) {
+                            killers[ply][1] = killers[ply][0];
+                            killers[ply][0] = move;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER
+            : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    private int quiesce(int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if (game.isGameEnded()) {
+            return -MATE + ply;
+        }
+        int known = probeTablebase(ply);
+        if (known != Tablebase.UNKNOWN) {
+            return known;
+        }
+        if (isOutOfBudget()) {
+            return 0;
+        }
+        nodes++;
+
+        int standPat = Evaluation.evaluate(game);
+        if (standPat >= beta || ply >= MAX_PLY) {
+            return standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+
+        int offset = ply * MoveGenerator.MAX_MOVES;
+        int end = MoveGenerator.generateCaptures(game.getBoard(), game.getCurrentPlayer(), moves, offset);
+        scoreMoves(offset, end, -1, ply);
+        for (int i = offset; i < end; i++) {
+            int move = pickNext(i, end);
+            game.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            game.unmakeMove();
+
+            if (stopped) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePv(ply, move);
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    /**
+     * Exact score of a position below the root from the tablebase, scored
+     * like a mate at the ply where the Sau is captured, so a win found in the
+     * tables and one found by searching compare by the same distance
+     * @return Tablebase.UNKNOWN if it is not covered
+     */
+    private int probeTablebase(int ply) {
+        if (tablebase == null || ply == 0) {
+            return Tablebase.UNKNOWN;
+        }
+        int value = tablebase.probe(game.getBoard(), game.getCurrentPlayer(), game.getMoveCount(), tablebaseSquares);
+        if (value == Tablebase.UNKNOWN || value == 0) {
+            return value;
+        }
+        int distance = Math.min(ply + Math.abs(value), MAX_TABLEBASE_DISTANCE);
+        return value > 0 ? MATE - distance : -MATE + distance;
+    }
+
+    // Hash move first, then captures by most valuable victim / least valuable attacker, then killers
+    private void scoreMoves(int offset, int end, int hashMove, int ply) {
+        ChessBoard board = game.getBoard();
+        long occupied = board.getOccupied();
+        for (int i = offset; i < end; i++) {
+            int move = moves[i];
+            int score;
+            if (move == hashMove) {
+                score = 1 << 30;
+            } else if ((occupied & (1L << Move.to(move))) != 0) {
+                PieceType victim = board.getTypeAt(Move.to(move));
+                PieceType attacker = board.getTypeAt(Move.from(move));
+                score = (1 << 20) + ORDER_VALUES[victim.ordinal()] * 16 - ORDER_VALUES[attacker.ordinal()] / 16;
+            } else if (move == killers[ply][0]) {
+                score = 1 << 19;
+            } else if (move == killers[ply][1]) {
+                score = (1 << 19) - 1;
+            } else {
+                score = 0;
+            }
+            orderScores[i] = score;
+        }
+    }
+
+    // Selection sort step: swaps the best remaining move into position i
+    private int pickNext(int i, int end) {
+        int best = i;
+        for (int j = i + 1; j < end; j++) {
+            if (orderScores[j] > orderScores[best]) {
+                best = j;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[i];
+        moves[i] = move;
+        int score = orderScores[best];
+        orderScores[best] = orderScores[i];
+        orderScores[i] = score;
+        return move;
+    }
+
+    private boolean isCapture(int move) {
+        PieceColor enemy = game.getCurrentPlayer() == PieceColor.RED ? PieceColor.BLUE : PieceColor.RED;
+        return (game.getBoard().getColorMask(enemy) & (1L << Move.to(move))) != 0;
+    }
+
+    private void updatePv(int ply, int move) {
+        pvTable[ply][ply] = move;
+        System.arraycopy(pvTable[ply + 1], ply + 1, pvTable[ply], ply + 1, pvLength[ply + 1] - ply - 1);
+        pvLength[ply] = pvLength[ply + 1];
+    }
+
+    private boolean isOutOfBudget() {
+        if (stopped) {
+            return true;
+        }
+        if (checkLimits && (nodes & 1023) == 0
+            && (nodes >= maxNodes || System.currentTimeMillis() >= deadline
+                || (stopSignal != null && stopSignal.get()))) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    // Mate and tablebase scores are stored relative to the node so they stay valid at any ply
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score + ply;
+        }
+        if (score <= -WIN_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score - ply;
+        }
+        if (score <= -WIN_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Nodes visited by the current or last search
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 5000;
+        SearchEngine engine = new SearchEngine();
+        System.out.println(engine.search(new GameManager(), SearchLimits.millis(millis)));
+    }
+}
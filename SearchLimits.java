@@ -0,0 +1,44 @@
+/**
+ * Limits for one engine search
+ */
+
+package engine;
+
+/**
+ * Depth, node and time budget for SearchEngine.search; whichever runs out first stops the search
+ */
+public final class SearchLimits {
+    private final int maxDepth;
+    private final long maxNodes;
+    private final long maxMillis;
+
+    public SearchLimits(int maxDepth, long maxNodes, long maxMillis) {
+        this.maxDepth = Math.min(maxDepth, SearchEngine.MAX_PLY - 1);
+        this.maxNodes = maxNodes;
+        this.maxMillis = maxMillis;
+    }
+
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits(maxDepth, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public static SearchLimits millis(long maxMillis) {
+        return new SearchLimits(SearchEngine.MAX_PLY - 1, Long.MAX_VALUE, maxMillis);
+    }
+
+    public static SearchLimits nodes(long maxNodes) {
+        return new SearchLimits(SearchEngine.MAX_PLY - 1, maxNodes, Long.MAX_VALUE);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Outcome of an engine search
+ */
+
+package engine;
+
+import model.Move;
+
+/**
+ * Best move, score and principal variation of the deepest completed iteration
+ */
+public final class SearchResult {
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long millis;
+    private final int[] pv;
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, long millis, int[] pv) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.millis = millis;
+        this.pv = pv;
+    }
+
+    /**
+     * @return the packed move, or -1 when the side to move has no move
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Score in centi-Ram from the side to move's point of view
+     */
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public int[] getPv() {
+        return pv.clone();
+    }
+
+    public long getNodesPerSecond() {
+        return millis > 0 ? nodes * 1000 / millis : nodes * 1000;
+    }
+
+    /**
+     * True when the score is a forced Sau capture for either side
+     */
+    public boolean isMateScore() {
+        return Math.abs(score) >= SearchEngine.MATE_BOUND;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("depth ").append(depth)
+            .append(" score ").append(score)
+            .append(" nodes ").append(nodes)
+            .append(" nps ").append(getNodesPerSecond())
+            .append(" pv");
+        for (int move : pv) {
+            text.append(' ').append(Move.toString(move));
+        }
+        return text.toString();
+    }
+}
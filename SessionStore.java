@@ -0,0 +1,369 @@
+/**
+ * Bounded in-memory session cache that spills idle games to disk
+ */
+
+package server;
+
+import model.BinaryGameFormat;
+import model.GameManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps at most maxResident sessions in memory in least-recently-used order.
+ * A session is evicted when the store is full or when it has been idle for
+ * longer than the idle limit (see evictIdle). Evicted games are written with
+ * GameManager.writeBinary, about a hundred bytes for a typical game, to one
+ * file per session, and read back with readBinary the next time the session
+ * is used. Heap use therefore follows the number of active games.
+ *
+ * Files are read, written and deleted outside the store's lock, so a slow
+ * disk only delays the sessions that need it. An evicted game waits in a
+ * small pending map until its file is on disk, and a session used again
+ * before then comes back from there. A session being loaded has a future in
+ * the loading map that other commands for it wait on, and a session being
+ * removed is kept in the removing set until its file is gone.
+ *
+ * Saved games outlive the process: on start the store takes over the files
+ * already in its directory as sessions and numbers new ones above them.
+ */
+public class SessionStore {
+    private final Path directory;
+    private final int maxResident;
+    private final long idleNanos;
+
+    // Guarded by this
+    private final LinkedHashMap<Long, GameSession> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, byte[]> pending = new HashMap<>();
+    private final Map<Long, CompletableFuture<GameSession>> loading = new HashMap<>();
+    private final Set<Long> removing = new HashSet<>();
+    // Serializes file writes, so an older copy of a game never overwrites a newer one
+    private final Object writeLock = new Object();
+    private long nextId;
+    private long sessions;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+
+    /**
+     * @param directory where evicted games are written, created if missing;
+     *                  games already saved there are kept as sessions
+     * @param maxResident most sessions kept in memory
+     * @param idleMillis sessions unused for longer are evicted by evictIdle
+     */
+    public SessionStore(Path directory, int maxResident, long idleMillis) throws IOException {
+        if (maxResident < 1) {
+            throw new IllegalArgumentException("maxResident must be at least 1");
+        }
+        this.directory = directory;
+        this.maxResident = maxResident;
+        this.idleNanos = idleMillis * 1_000_000L;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + BinaryGameFormat.EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    long id = Long.parseLong(name.substring(0, name.length() - BinaryGameFormat.EXTENSION.length()));
+                    nextId = Math.max(nextId, id);
+                    sessions++;
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a new game
+     * @return its session id
+     */
+    public long create(GameManager game) throws IOException {
+        List<Spill> spills = new ArrayList<>();
+        long id;
+        synchronized (this) {
+            id = ++nextId;
+            sessions++;
+            resident.put(id, new GameSession(id, game));
+            evictOverflow(spills);
+        }
+        write(spills);
+        return id;
+    }
+
+    /**
+     * Runs an action on a session while holding its lock, loading it first if it was evicted
+     * @return the action's result, or null if there is no such session
+     */
+    public <T> T apply(long id, Function<GameSession, T> action) throws IOException {
+        while (true) {
+            GameSession session = get(id);
+            if (session == null) {
+                return null;
+            }
+            synchronized (session) {
+                // Evicted between get and the lock: load it again
+                if (!session.isEvicted()) {
+                    return action.apply(session);
+                }
+            }
+        }
+    }
+
+    private GameSession get(long id) throws IOException {
+        CompletableFuture<GameSession> load;
+        byte[] data = null;
+        boolean loader = false;
+        synchronized (this) {
+            GameSession session = resident.get(id);
+            if (session != null) {
+                hits.incrementAndGet();
+                return session;
+            }
+            if (removing.contains(id)) {
+                return null;
+            }
+            load = loading.get(id);
+            if (load == null) {
+                load = new CompletableFuture<>();
+                loading.put(id, load);
+                loader = true;
+                // The file is read below unless the spill is still in memory
+                data = pending.remove(id);
+            }
+        }
+        if (!loader) {
+            return await(load);
+        }
+
+        List<Spill> spills = new ArrayList<>();
+        GameSession session = null;
+        try {
+            if (data == null) {
+                data = read(id);
+            }
+            if (data != null) {
+                GameManager game = new GameManager();
+                game.readBinary(new ByteArrayInputStream(data));
+                session = new GameSession(id, game);
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                loading.remove(id, load);
+            }
+            load.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            // Removed while loading
+            if (!loading.remove(id, load)) {
+                session = null;
+            }
+            if (session != null) {
+                misses.incrementAndGet();
+                resident.put(id, session);
+                evictOverflow(spills);
+            }
+        }
+        load.complete(session);
+        write(spills);
+        return session;
+    }
+
+    private static GameSession await(CompletableFuture<GameSession> load) throws IOException {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading a session", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new UncheckedIOException(new IOException(e.getCause()));
+        }
+    }
+
+    /**
+     * Forgets a session, in memory and on disk
+     * @return false if there was no such session
+     */
+    public boolean remove(long id) throws IOException {
+        boolean removed;
+        synchronized (this) {
+            if (!removing.add(id)) {
+                // Already being removed by another command
+                return false;
+            }
+            GameSession session = resident.remove(id);
+            removed = session != null | pending.remove(id) != null | loading.remove(id) != null;
+            if (session != null) {
+                synchronized (session) {
+                    session.markEvicted();
+                }
+            }
+        }
+        try {
+            // Under writeLock, so a spill of this session cannot be written after the delete
+            synchronized (writeLock) {
+                removed |= Files.deleteIfExists(file(id));
+            }
+        } finally {
+            synchronized (this) {
+                removing.remove(id);
+                if (removed) {
+                    sessions--;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Evicts every session that has not been used within the idle limit;
+     * the server calls this periodically
+     */
+    public void evictIdle() throws IOException {
+        List<Spill> spills = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            Iterator<GameSession> eldest = resident.values().iterator();
+            while (eldest.hasNext()) {
+                GameSession session = eldest.next();
+                if (now - session.getLastAccess() < idleNanos) {
+                    break;
+                }
+                eldest.remove();
+                spills.add(evict(session));
+            }
+        }
+        write(spills);
+    }
+
+    // Caller holds the lock
+    private void evictOverflow(List<Spill> spills) {
+        Iterator<GameSession> eldest = resident.values().iterator();
+        while (resident.size() > maxResident) {
+            GameSession session = eldest.next();
+            eldest.remove();
+            spills.add(evict(session));
+        }
+    }
+
+    // Caller holds the lock and has removed the session from resident
+    private Spill evict(GameSession session) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        synchronized (session) {
+            try {
+                session.getGame().writeBinary(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            session.markEvicted();
+        }
+        byte[] data = bytes.toByteArray();
+        pending.put(session.getId(), data);
+        evictions.incrementAndGet();
+        return new Spill(session.getId(), data);
+    }
+
+    private void write(List<Spill> spills) throws IOException {
+        if (spills.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            for (Spill spill : spills) {
+                boolean removed = false;
+                synchronized (this) {
+                    // Loaded again, evicted again or removed meanwhile
+                    if (pending.get(spill.id) != spill.data) {
+                        continue;
+                    }
+                }
+                Files.write(file(spill.id), spill.data);
+                spilledBytes.addAndGet(spill.data.length);
+                synchronized (this) {
+                    if (!pending.remove(spill.id, spill.data) && !pending.containsKey(spill.id)
+                        && !resident.containsKey(spill.id) && !loading.containsKey(spill.id)) {
+                        // Removed while the file was being written
+                        removed = true;
+                    }
+                }
+                if (removed) {
+                    Files.deleteIfExists(file(spill.id));
+                }
+            }
+        }
+    }
+
+    private byte[] read(long id) throws IOException {
+        try {
+            return Files.readAllBytes(file(id));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private Path file(long id) {
+        return directory.resolve(id + BinaryGameFormat.EXTENSION);
+    }
+
+    public synchronized long getSessionCount() {
+        return sessions;
+    }
+
+    public synchronized int getResidentCount() {
+        return resident.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Counters for the STATS command
+     */
+    public String getStats() {
+        return "sessions=" + getSessionCount() + " resident=" + getResidentCount()
+            + " hits=" + hits.get() + " misses=" + misses.get()
+            + " evictions=" + evictions.get() + " spilledBytes=" + spilledBytes.get();
+    }
+
+    private static final class Spill {
+        final long id;
+        final byte[] data;
+
+        Spill(long id, byte[] data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+}
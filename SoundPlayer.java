@@ -4,58 +4,189 @@
  */
 package util;
 
+import model.GameEvent;
+import model.Move;
+
 import javax.sound.sampled.*;
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
- * Handles playing different sound effects for game events
+ * Handles playing different sound effects for game events.
+ * playSound only queues a request, so callers on the event thread never wait
+ * for audio. A single daemon thread decodes every effect once when the class is
+ * first used, opens a small pool of clips per effect and restarts those clips
+ * for each request instead of opening new lines.
  * @author Kuanyang, Aleesya
  */
 public class SoundPlayer {
-    private static Clip backgroundClip = null;
+    private static final int CLIPS_PER_EFFECT = 3;
+    private static final String BACKGROUND = "background";
+    private static final String STOP_BACKGROUND = "stop background";
+
+    private static final Metrics.Counter REQUESTS = Metrics.counter("sound.requests");
+    private static final Metrics.Counter DROPPED = Metrics.counter("sound.dropped");
+    private static final Metrics.Histogram PLAY_TIME = Metrics.histogram("sound.play");
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("sound.load");
+
+    private static final BlockingQueue<String> requests = new ArrayBlockingQueue<>(32);
+
+    // Only touched by the sound thread
+    private static final Map<String, Clip[]> pools = new HashMap<>();
+    private static final Map<String, Integer> nextClip = new HashMap<>();
     private static boolean isBackgroundPlaying = false;
 
-    public static void playSound(String soundType) {
-        String soundFile = switch (soundType) {
+    static {
+        Thread thread = new Thread(SoundPlayer::run, "sound");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String getSoundFile(String soundType) {
+        return switch (soundType) {
                 case "move" -> "/sounds/move-self.wav";
                 case "capture" -> "/sounds/capture.wav";
-                case "game over" -> "/sounds/notify.wav";
-                case "background" -> "/sounds/background.wav";
+                case "game over", "transform" -> "/sounds/notify.wav";
+                case BACKGROUND -> "/sounds/background.wav";
                 default -> null;
             };
+    }
 
-        if (soundFile == null) return;
+    /**
+     * Queues a sound; if the queue is full the sound is dropped rather than waited for
+     */
+    public static void playSound(String soundType) {
+        if (getSoundFile(soundType) != null) {
+            boolean queued = requests.offer(soundType);
+            if (Metrics.ENABLED) {
+                REQUESTS.increment();
+                if (!queued) {
+                    DROPPED.increment();
+                }
+            }
+        }
+    }
 
-        try {
-            URL soundURL = SoundPlayer.class.getResource(soundFile);
-            if (soundURL == null) return;
-            AudioInputStream audioIn = AudioSystem.getAudioInputStream(soundURL);
-            Clip clip = AudioSystem.getClip();
-            clip.open(audioIn);
+    /**
+     * Game listener that plays the sound for each move event,
+     * subscribed with gameManager.getEventBus().subscribe(SoundPlayer::onGameEvent)
+     */
+    public static void onGameEvent(GameEvent event) {
+        switch (event.getType()) {
+            case MOVED -> {
+                if (Move.capturedType(event.getRecord()) == null) {
+                    playSound("move");
+                }
+            }
+            case CAPTURED -> playSound("capture");
+            case GAME_OVER -> playSound("game over");
+            case TRANSFORMED -> playSound("transform");
+        }
+    }
 
+    public static void stopBackgroundMusic() {
+        requests.offer(STOP_BACKGROUND);
+    }
+
+    private static void run() {
+        load("move");
+        load("capture");
+        load("game over");
+        load("transform");
+        load(BACKGROUND);
+
+        while (true) {
+            String soundType;
+            try {
+                soundType = requests.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (soundType.equals(STOP_BACKGROUND)) {
+                Clip[] background = pools.get(BACKGROUND);
+                if (background != null) {
+                    background[0].stop();
+                }
+                isBackgroundPlaying = false;
+                continue;
+            }
+
+            Clip[] pool = pools.get(soundType);
+            if (pool == null) {
+                continue;
+            }
+            FlightEvents.SoundEvent event = Metrics.ENABLED ? new FlightEvents.SoundEvent() : null;
+            long start = 0;
+            if (Metrics.ENABLED) {
+                event.begin();
+                start = System.nanoTime();
+            }
             // If it's background music, handle it separately
-            if (soundType.equals("background")) {
+            if (soundType.equals(BACKGROUND)) {
                 if (!isBackgroundPlaying) {
-                    if (backgroundClip != null) {
-                        backgroundClip.stop();
-                    }
-                    backgroundClip = clip;
-                    backgroundClip.loop(Clip.LOOP_CONTINUOUSLY);
+                    pool[0].setFramePosition(0);
+                    pool[0].loop(Clip.LOOP_CONTINUOUSLY);
                     isBackgroundPlaying = true;
                 }
             } else {
+                // Reuse the clips in turn so quick repeats can overlap
+                int index = nextClip.merge(soundType, 1, (a, b) -> (a + b) % pool.length);
+                Clip clip = pool[index];
+                clip.stop();
+                clip.setFramePosition(0);
                 clip.start();
             }
-        } catch (UnsupportedAudioFileException | IOException | LineUnavailableException e) {
-            e.printStackTrace();
+            if (Metrics.ENABLED) {
+                PLAY_TIME.recordSince(start);
+                commit(event, soundType, "play");
+            }
         }
     }
 
-    public static void stopBackgroundMusic() {
-        if (backgroundClip != null) {
-            backgroundClip.stop();
-            isBackgroundPlaying = false;
+    private static void commit(FlightEvents.SoundEvent event, String soundType, String action) {
+        if (event.shouldCommit()) {
+            event.effect = soundType;
+            event.action = action;
+            event.commit();
+        }
+    }
+
+    // Decodes an effect once and opens its clips on the shared data
+    private static void load(String soundType) {
+        String soundFile = getSoundFile(soundType);
+        FlightEvents.SoundEvent event = Metrics.ENABLED ? new FlightEvents.SoundEvent() : null;
+        long start = 0;
+        if (Metrics.ENABLED) {
+            event.begin();
+            start = System.nanoTime();
+        }
+        try (InputStream resource = SoundPlayer.class.getResourceAsStream(soundFile)) {
+            if (resource == null) return;
+            AudioInputStream audioIn = AudioSystem.getAudioInputStream(new BufferedInputStream(resource));
+            AudioFormat format = audioIn.getFormat();
+            byte[] data = audioIn.readAllBytes();
+
+            Clip[] pool = new Clip[soundType.equals(BACKGROUND) ? 1 : CLIPS_PER_EFFECT];
+            for (int i = 0; i < pool.length; i++) {
+                pool[i] = AudioSystem.getClip();
+                pool[i].open(format, data, 0, data.length);
+            }
+            pools.put(soundType, pool);
+            nextClip.put(soundType, pool.length - 1);
+        } catch (UnsupportedAudioFileException | IOException | LineUnavailableException
+                 | IllegalArgumentException e) {
+            // No usable mixer or a bad file: the game just runs without this effect
+            System.err.println("Sound \"" + soundType + "\" unavailable: " + e.getMessage());
+        }
+        if (Metrics.ENABLED) {
+            LOAD_TIME.recordSince(start);
+            commit(event, soundType, "load");
         }
     }
-}
\ No newline at end of file
+}
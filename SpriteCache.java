@@ -0,0 +1,97 @@
+/**
+ * Cache of ready-to-draw piece images
+ */
+
+package view;
+
+import util.FlightEvents;
+import util.Metrics;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads each piece image from the classpath once and keeps copies already
+ * scaled to a size and, for the flipped board, rotated half a turn,
+ * so painting a square is a single drawImage. Used on the event thread only.
+ */
+public class SpriteCache {
+    private static final String IMAGE_DIRECTORY = "/chessImages/";
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("view.loadImage");
+
+    private final Map<String, BufferedImage> sources = new HashMap<>();
+    private final Map<String, BufferedImage> sprites = new HashMap<>();
+
+    /**
+     * @param imagePath file name as returned by ChessBoard.getImagePath
+     * @return null if the image could not be loaded
+     */
+    public BufferedImage get(String imagePath, int size, boolean flipped) {
+        String key = imagePath + '@' + size + (flipped ? "F" : "");
+        if (sprites.containsKey(key)) {
+            return sprites.get(key);
+        }
+
+        BufferedImage sprite = null;
+        BufferedImage source = load(imagePath);
+        if (source != null && size > 0) {
+            sprite = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = sprite.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (flipped) {
+                g.translate(size, size);
+                g.scale(-1, -1);
+            }
+            g.drawImage(source, 0, 0, size, size, null);
+            g.dispose();
+        }
+        sprites.put(key, sprite);
+        return sprite;
+    }
+
+    /**
+     * Drops the scaled copies, e.g. after the board was resized
+     */
+    public void clearScaled() {
+        sprites.clear();
+    }
+
+    private BufferedImage load(String imagePath) {
+        if (sources.containsKey(imagePath)) {
+            return sources.get(imagePath);
+        }
+        FlightEvents.ImageLoadEvent event = Metrics.ENABLED ? new FlightEvents.ImageLoadEvent() : null;
+        long start = 0;
+        if (Metrics.ENABLED) {
+            event.begin();
+            start = System.nanoTime();
+        }
+        BufferedImage image = null;
+        try (InputStream in = SpriteCache.class.getResourceAsStream(IMAGE_DIRECTORY + imagePath)) {
+            if (in != null) {
+                image = ImageIO.read(in);
+            }
+        } catch (IOException e) {
+            // Reported below like a missing file
+        }
+        if (image == null) {
+            System.err.println("Error loading image: " + imagePath);
+        }
+        if (Metrics.ENABLED) {
+            LOAD_TIME.recordSince(start);
+            if (event.shouldCommit()) {
+                event.image = imagePath;
+                event.found = image != null;
+                event.commit();
+            }
+        }
+        sources.put(imagePath, image);
+        return image;
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * Endgame tablebase lookup
+ */
+
+package engine;
+
+import model.ChessBoard;
+import model.GameManager;
+import model.PieceColor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Solved endings loaded from the .kwt files written by TablebaseGenerator.
+ * Each table stores, for every index of its Material, the number of plies
+ * until a Sau is captured with best play: odd for a win of the side to move,
+ * even for a loss, 0 for a draw. Values are bit-packed at the smallest width
+ * that holds the longest distance.
+ *
+ * File layout: "KWZT" magic, version int, material name (UTF), bits per value
+ * byte, value count long, then the packed values as longs.
+ */
+public class Tablebase {
+    public static final String DEFAULT_DIRECTORY = "tablebases";
+    public static final String EXTENSION = ".kwt";
+    /** Returned by probe when the position is not covered */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    static final int MAGIC = 0x4B575A54;
+    static final int VERSION = 1;
+
+    private final Map<Integer, Table> tables = new HashMap<>();
+    private int maxPieces;
+
+    /**
+     * One solved material
+     */
+    static final class Table {
+        private final Material material;
+        private final long[] words;
+        private final int bits;
+
+        Table(Material material, long[] words, int bits) {
+            this.material = material;
+            this.words = words;
+            this.bits = bits;
+        }
+
+        /**
+         * Packs distances as produced by the generator (positive win, negative loss)
+         */
+        static Table pack(Material material, short[] values) {
+            int max = 0;
+            for (short value : values) {
+                max = Math.max(max, Math.abs(value));
+            }
+            int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+            long[] words = new long[(int) ((values.length * (long) bits + 63) / 64)];
+            for (int i = 0; i < values.length; i++) {
+                long bit = (long) i * bits;
+                long value = Math.abs(values[i]);
+                words[(int) (bit >>> 6)] |= value << bit;
+                int spill = (int) (bit & 63) + bits - 64;
+                if (spill > 0) {
+                    words[(int) (bit >>> 6) + 1] |= value >>> (bits - spill);
+                }
+            }
+            return new Table(material, words, bits);
+        }
+
+        /**
+         * Signed distance: positive if the side to move wins, negative if it loses, 0 for a draw
+         */
+        int value(long index) {
+            long bit = index * bits;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            long raw = words[word] >>> shift;
+            if (shift + bits > 64) {
+                raw |= words[word + 1] << (64 - shift);
+            }
+            int distance = (int) (raw & ((1L << bits) - 1));
+            return (distance & 1) != 0 ? distance : -distance;
+        }
+
+        Material getMaterial() {
+            return material;
+        }
+
+        void write(Path path) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(material.getName());
+                out.writeByte(bits);
+                out.writeLong(material.size());
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+        }
+
+        static Table read(Path path) throws IOException {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a Kwazam tablebase: " + path);
+                }
+                int version = in.readInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported tablebase version " + version + ": " + path);
+                }
+                Material material = Material.parse(in.readUTF());
+                int bits = in.readUnsignedByte();
+                long count = in.readLong();
+                if (count != material.size() || bits < 1 || bits > 16) {
+                    throw new IOException("Corrupt tablebase header: " + path);
+                }
+                long[] words = new long[(int) ((count * bits + 63) / 64)];
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = in.readLong();
+                }
+                return new Table(material, words, bits);
+            }
+        }
+    }
+
+    /**
+     * Loads every table in a directory
+     */
+    public static Tablebase load(Path directory) throws IOException {
+        Tablebase tablebase = new Tablebase();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                tablebase.add(Table.read(file));
+            }
+        }
+        return tablebase;
+    }
+
+    /**
+     * Loads the default directory in the working directory if there is one
+     * @return null if there are no tables
+     */
+    public static Tablebase loadDefault() {
+        Path directory = Paths.get(DEFAULT_DIRECTORY);
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        try {
+            Tablebase tablebase = load(directory);
+            return tablebase.tables.isEmpty() ? null : tablebase;
+        } catch (IOException e) {
+            System.err.println("Error loading tablebases: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Most pieces of any table in the default directory, judged from the file
+     * names (e.g. STvS.kwt) without reading the tables
+     * @return 0 if there are none
+     */
+    public static int availablePieces() {
+        Path directory = Paths.get(DEFAULT_DIRECTORY);
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int pieces = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    pieces = Math.max(pieces, Material.parse(name.substring(0, name.length() - EXTENSION.length())).getPieces());
+                } catch (IllegalArgumentException e) {
+                    // Not a table name; load reports it if it is unreadable
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing tablebases: " + e.getMessage());
+        }
+        return pieces;
+    }
+
+    void add(Table table) {
+        tables.put(table.getMaterial().getKey(), table);
+        maxPieces = Math.max(maxPieces, table.getMaterial().getPieces());
+    }
+
+    Table get(Material material) {
+        return tables.get(material.getKey());
+    }
+
+    /**
+     * Most pieces on the board of any loaded table; positions with more are never covered
+     */
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * @return plies to the Sau capture with best play, positive if the side to move
+     *     wins and negative if it loses, 0 for a draw, or UNKNOWN
+     */
+    public int probe(GameManager game) {
+        if (game.isGameEnded()) {
+            return UNKNOWN;
+        }
+        return probe(game.getBoard(), game.getCurrentPlayer(), game.getMoveCount());
+    }
+
+    public int probe(ChessBoard board, PieceColor side, int moveCount) {
+        return probe(board, side, moveCount, new int[maxPieces]);
+    }
+
+    /**
+     * probe for the search: squares is scratch space of at least getMaxPieces() entries,
+     * reused from probe to probe
+     */
+    int probe(ChessBoard board, PieceColor side, int moveCount, int[] squares) {
+        if (Long.bitCount(board.getOccupied()) > maxPieces) {
+            return UNKNOWN;
+        }
+        Table table = tables.get(Material.keyOf(board));
+        if (table == null) {
+            return UNKNOWN;
+        }
+        long index = table.getMaterial().index(board, side, moveCount, squares);
+        return index < 0 ? UNKNOWN : table.value(index);
+    }
+
+    /**
+     * Text for the status bar, e.g. "Blue wins in 7 plies"
+     */
+    public static String describe(int value, PieceColor side) {
+        if (value == UNKNOWN) {
+            return null;
+        }
+        if (value == 0) {
+            return "Draw with best play";
+        }
+        PieceColor winner = value > 0 ? side : side == PieceColor.BLUE ? PieceColor.RED : PieceColor.BLUE;
+        String name = winner == PieceColor.BLUE ? "Blue" : "Red";
+        return name + " wins in " + Math.abs(value) + " plies";
+    }
+}
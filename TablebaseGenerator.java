@@ -0,0 +1,500 @@
+/**
+ * Retrograde endgame tablebase generator
+ */
+
+package engine;
+
+import model.ChessBoard;
+import model.IntList;
+import model.PieceColor;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves an ending completely by retrograde analysis and writes it for Tablebase.
+ *
+ * A first pass over every index generates the moves of the side to move: Sau
+ * captures are wins in 1, other captures are looked up in the already solved
+ * smaller material (solved first, recursively), and quiet moves are counted.
+ * Then positions are settled level by level, a level being the number of
+ * plies to the Sau capture. Each position settled at level L is walked
+ * backwards with un-moves (which undo the Ram reversal and, on phase 0, the
+ * Tor/Xor transform): a predecessor of a loss is a win at L + 1, and a
+ * predecessor whose quiet moves all lead to wins becomes a loss once its
+ * counter runs out. Whatever is never settled is a draw, as the game has no
+ * move limit. Both passes split their work over a thread pool; the move
+ * counters are decremented atomically.
+ *
+ * Usage: java engine.TablebaseGenerator material... [-d directory] [-t threads]
+ *   e.g. java engine.TablebaseGenerator STvS SvST SBRvS
+ */
+public class TablebaseGenerator implements AutoCloseable {
+    private static final VarHandle COUNTERS = MethodHandles.arrayElementVarHandle(int[].class);
+    // Added to the move counter of a position that cannot lose, so it never reaches 0
+    private static final int CANNOT_LOSE = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    private final Path directory;
+    private final int threads;
+    private final ExecutorService pool;
+    private final Tablebase solved = new Tablebase();
+
+    public TablebaseGenerator(Path directory, int threads) {
+        this.directory = directory;
+        this.threads = threads;
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Solves a material such as "STvS" and everything it can capture down to,
+     * reusing tables already in the directory
+     * @return the loaded tables
+     */
+    public Tablebase generate(String name) throws IOException, InterruptedException {
+        generate(Material.parse(name));
+        return solved;
+    }
+
+    private Tablebase.Table generate(Material material) throws IOException, InterruptedException {
+        Tablebase.Table table = solved.get(material);
+        if (table != null) {
+            return table;
+        }
+        Path file = directory.resolve(material.getName() + Tablebase.EXTENSION);
+        if (Files.exists(file)) {
+            table = Tablebase.Table.read(file);
+            solved.add(table);
+            return table;
+        }
+
+        Tablebase.Table[] captures = new Tablebase.Table[material.getPieces()];
+        for (int piece = 0; piece < material.getPieces(); piece++) {
+            if (material.getPieceClass(piece) != Material.SAU) {
+                captures[piece] = generate(material.without(piece));
+            }
+        }
+
+        long start = System.nanoTime();
+        Solver solver = new Solver(material, captures);
+        short[] values = solver.solve();
+        table = Tablebase.Table.pack(material, values);
+        Files.createDirectories(directory);
+        table.write(file);
+        solved.add(table);
+        System.out.printf("%-8s %,13d positions  %s  %.1f s%n", material.getName(), values.length,
+            solver.summary(), (System.nanoTime() - start) / 1e9);
+        return table;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Wins and losses waiting to be settled, by level
+     */
+    private static final class Levels {
+        private final List<IntList> wins = new ArrayList<>();
+        private final List<IntList> losses = new ArrayList<>();
+
+        void add(int level, int index, boolean win) {
+            List<IntList> lists = win ? wins : losses;
+            while (lists.size() <= level) {
+                lists.add(new IntList());
+            }
+            lists.get(level).add(index);
+        }
+
+        void addAll(Levels other) {
+            for (int level = 0; level < other.wins.size(); level++) {
+                IntList list = other.wins.get(level);
+                for (int i = 0; i < list.size(); i++) {
+                    add(level, list.get(i), true);
+                }
+            }
+            for (int level = 0; level < other.losses.size(); level++) {
+                IntList list = other.losses.get(level);
+                for (int i = 0; i < list.size(); i++) {
+                    add(level, list.get(i), false);
+                }
+            }
+        }
+
+        int maxLevel() {
+            return Math.max(wins.size(), losses.size()) - 1;
+        }
+
+        IntList get(int level, boolean win) {
+            List<IntList> lists = win ? wins : losses;
+            return level < lists.size() ? lists.get(level) : new IntList();
+        }
+    }
+
+    /**
+     * Solves one material
+     */
+    private final class Solver {
+        private final Material material;
+        private final Tablebase.Table[] captures;
+        private final Material[] captureMaterials;
+        private final int transformMask;
+        private final short[] values;
+        private final int[] counters;
+
+        Solver(Material material, Tablebase.Table[] captures) {
+            if (material.size() > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException(material.getName() + " is too large to solve");
+            }
+            this.material = material;
+            this.captures = captures;
+            captureMaterials = new Material[captures.length];
+            for (int piece = 0; piece < captures.length; piece++) {
+                captureMaterials[piece] = captures[piece] == null ? null : captures[piece].getMaterial();
+            }
+            transformMask = material.getTransformMask();
+            values = new short[(int) material.size()];
+            counters = new int[values.length];
+        }
+
+        short[] solve() throws InterruptedException, IOException {
+            Levels levels = new Levels();
+            int size = values.length;
+            for (Levels part : runAll(size, (from, to) -> initialize(from, to))) {
+                levels.addAll(part);
+            }
+
+            for (int level = 1; level <= levels.maxLevel(); level++) {
+                IntList settled = new IntList();
+                settle(levels.get(level, true), level, settled);
+                settle(levels.get(level, false), -level, settled);
+                int current = level;
+                for (Levels part : runAll(settled.size(), (from, to) -> propagate(settled, from, to, current))) {
+                    levels.addAll(part);
+                }
+            }
+            return values;
+        }
+
+        String summary() {
+            long wins = 0;
+            long losses = 0;
+            int longest = 0;
+            for (short value : values) {
+                if (value > 0) {
+                    wins++;
+                } else if (value < 0) {
+                    losses++;
+                }
+                longest = Math.max(longest, Math.abs(value));
+            }
+            return String.format("wins %,d  losses %,d  longest %d plies", wins, losses, longest);
+        }
+
+        private void settle(IntList candidates, int value, IntList settled) {
+            for (int i = 0; i < candidates.size(); i++) {
+                int index = candidates.get(i);
+                if (values[index] == 0) {
+                    values[index] = (short) value;
+                    settled.add(index);
+                }
+            }
+        }
+
+        // First pass: immediate results and quiet move counts for indices [from, to)
+        private Levels initialize(int from, int to) {
+            Levels levels = new Levels();
+            int[] squares = new int[material.getPieces()];
+            for (int index = from; index < to; index++) {
+                if (!material.decode(index, squares)) {
+                    continue;
+                }
+                int phase = material.phase(index);
+                int flags = material.flags(index);
+                int side = sideToMove(phase);
+                long occupied = 0;
+                long own = 0;
+                for (int piece = 0; piece < squares.length; piece++) {
+                    occupied |= 1L << squares[piece];
+                    if (material.getColor(piece) == side) {
+                        own |= 1L << squares[piece];
+                    }
+                }
+
+                int quiet = 0;
+                int bestWin = Integer.MAX_VALUE;
+                int lossLevel = 0;
+                boolean cannotLose = false;
+                boolean anyMove = false;
+                for (int piece = 0; piece < squares.length; piece++) {
+                    if (material.getColor(piece) != side) {
+                        continue;
+                    }
+                    long targets = material.targets(piece, squares[piece], flags, occupied) & ~own;
+                    for (; targets != 0; targets &= targets - 1) {
+                        anyMove = true;
+                        int target = Long.numberOfTrailingZeros(targets);
+                        if ((occupied & (1L << target)) == 0) {
+                            quiet++;
+                            continue;
+                        }
+                        int captured = pieceAt(squares, target);
+                        if (material.getPieceClass(captured) == Material.SAU) {
+                            bestWin = 1;
+                            cannotLose = true;
+                            continue;
+                        }
+                        int value = captureValue(squares, flags, phase, piece, target, captured);
+                        if (value < 0) {
+                            bestWin = Math.min(bestWin, 1 - value);
+                            cannotLose = true;
+                        } else if (value == 0) {
+                            cannotLose = true;
+                        } else {
+                            lossLevel = Math.max(lossLevel, value + 1);
+                        }
+                    }
+                }
+
+                counters[index] = quiet + (cannotLose ? CANNOT_LOSE : 0);
+                if (bestWin != Integer.MAX_VALUE) {
+                    levels.add(bestWin, index, true);
+                } else if (anyMove && quiet == 0 && !cannotLose) {
+                    levels.add(lossLevel, index, false);
+                }
+                // No move at all is a draw, as in the search
+            }
+            return levels;
+        }
+
+        // Walks back from positions settled at this level to their predecessors
+        private Levels propagate(IntList settled, int from, int to, int level) {
+            Levels levels = new Levels();
+            int[] squares = new int[material.getPieces()];
+            for (int i = from; i < to; i++) {
+                int index = settled.get(i);
+                boolean loss = values[index] < 0;
+                material.decode(index, squares);
+                int phase = material.phase(index);
+                int flags = material.flags(index);
+                int previousPhase = (phase + 3) & 3;
+                int previousFlags = phase == 0 ? flags ^ transformMask : flags;
+                int mover = sideToMove(previousPhase);
+                long occupied = 0;
+                for (int square : squares) {
+                    occupied |= 1L << square;
+                }
+
+                for (int piece = 0; piece < squares.length; piece++) {
+                    if (material.getColor(piece) != mover) {
+                        continue;
+                    }
+                    int square = squares[piece];
+                    if (material.getPieceClass(piece) == Material.RAM) {
+                        unmoveRam(squares, piece, previousFlags, previousPhase, occupied, loss, level, levels);
+                        continue;
+                    }
+                    long origins = material.targets(piece, square, previousFlags, occupied) & ~occupied;
+                    for (; origins != 0; origins &= origins - 1) {
+                        squares[piece] = Long.numberOfTrailingZeros(origins);
+                        visit(material.index(squares, previousFlags, previousPhase), loss, level, levels);
+                    }
+                    squares[piece] = square;
+                }
+            }
+            return levels;
+        }
+
+        // A Ram steps one row, so it came from the row behind it in the direction it had then
+        private void unmoveRam(int[] squares, int piece, int flags, int phase, long occupied,
+                               boolean loss, int level, Levels levels) {
+            int square = squares[piece];
+            int row = square / ChessBoard.COLS;
+            PieceColor color = PieceColor.values()[material.getColor(piece)];
+            int forward = color == PieceColor.RED ? 1 : -1;
+            int bit = 1 << material.getFlagBit(piece);
+            boolean reversed = (flags & bit) != 0;
+            boolean onEndRow = row == ChessBoard.endRow(color);
+
+            if (reversed) {
+                // Still reversed: it was moving back the other way
+                unmoveRamFrom(squares, piece, row + forward, flags, phase, occupied, loss, level, levels);
+                if (onEndRow) {
+                    // Just arrived on the far row and turned around
+                    unmoveRamFrom(squares, piece, row - forward, flags & ~bit, phase, occupied, loss, level, levels);
+                }
+            } else if (!onEndRow) {
+                unmoveRamFrom(squares, piece, row - forward, flags, phase, occupied, loss, level, levels);
+            }
+        }
+
+        private void unmoveRamFrom(int[] squares, int piece, int row, int flags, int phase, long occupied,
+                                   boolean loss, int level, Levels levels) {
+            if (row < 0 || row >= ChessBoard.ROWS) {
+                return;
+            }
+            int square = squares[piece];
+            int origin = row * ChessBoard.COLS + square % ChessBoard.COLS;
+            if ((occupied & (1L << origin)) != 0) {
+                return;
+            }
+            squares[piece] = origin;
+            visit(material.index(squares, flags, phase), loss, level, levels);
+            squares[piece] = square;
+        }
+
+        private void visit(long predecessor, boolean loss, int level, Levels levels) {
+            int index = (int) predecessor;
+            if (values[index] != 0) {
+                return;
+            }
+            if (loss) {
+                levels.add(level + 1, index, true);
+            } else if ((int) COUNTERS.getAndAdd(counters, index, -1) == 1) {
+                levels.add(Math.max(level + 1, captureLossLevel(index)), index, false);
+            }
+        }
+
+        // Level at which a position with only losing captures left is lost through them
+        private int captureLossLevel(int index) {
+            int[] squares = new int[material.getPieces()];
+            material.decode(index, squares);
+            int phase = material.phase(index);
+            int flags = material.flags(index);
+            int side = sideToMove(phase);
+            long occupied = 0;
+            long enemy = 0;
+            for (int piece = 0; piece < squares.length; piece++) {
+                occupied |= 1L << squares[piece];
+                if (material.getColor(piece) != side) {
+                    enemy |= 1L << squares[piece];
+                }
+            }
+            int level = 0;
+            for (int piece = 0; piece < squares.length; piece++) {
+                if (material.getColor(piece) != side) {
+                    continue;
+                }
+                long targets = material.targets(piece, squares[piece], flags, occupied) & enemy;
+                for (; targets != 0; targets &= targets - 1) {
+                    int target = Long.numberOfTrailingZeros(targets);
+                    int value = captureValue(squares, flags, phase, piece, target, pieceAt(squares, target));
+                    level = Math.max(level, value + 1);
+                }
+            }
+            return level;
+        }
+
+        /**
+         * Value after a capture, from the point of view of the side that is then to move
+         */
+        private int captureValue(int[] squares, int flags, int phase, int piece, int target, int captured) {
+            Material smaller = captureMaterials[captured];
+            int newPhase = (phase + 1) & 3;
+            int movedFlags = afterMove(flags, piece, target);
+            int[] remaining = new int[squares.length - 1];
+            int smallerFlags = 0;
+            int next = 0;
+            for (int other = 0; other < squares.length; other++) {
+                if (other == captured) {
+                    continue;
+                }
+                remaining[next] = other == piece ? target : squares[other];
+                int bit = material.getFlagBit(other);
+                if (bit >= 0 && (movedFlags & (1 << bit)) != 0) {
+                    smallerFlags |= 1 << smaller.getFlagBit(next);
+                }
+                next++;
+            }
+            if (newPhase == 0) {
+                smallerFlags ^= smaller.getTransformMask();
+            }
+            return captures[captured].value(smaller.index(remaining, smallerFlags, newPhase));
+        }
+
+        // A Ram that reaches the far row turns around
+        private int afterMove(int flags, int piece, int target) {
+            if (material.getPieceClass(piece) == Material.RAM) {
+                PieceColor color = PieceColor.values()[material.getColor(piece)];
+                if (target / ChessBoard.COLS == ChessBoard.endRow(color)) {
+                    return flags | 1 << material.getFlagBit(piece);
+                }
+            }
+            return flags;
+        }
+
+        private <T> List<T> runAll(int size, RangeTask<T> task) throws InterruptedException, IOException {
+            int chunks = Math.max(1, Math.min(size, threads * CHUNKS_PER_THREAD));
+            List<Future<T>> futures = new ArrayList<>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int from = (int) ((long) size * chunk / chunks);
+                int to = (int) ((long) size * (chunk + 1) / chunks);
+                Callable<T> call = () -> task.run(from, to);
+                futures.add(pool.submit(call));
+            }
+            List<T> results = new ArrayList<>(chunks);
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IOException("Tablebase worker failed", e.getCause());
+                }
+            }
+            return results;
+        }
+    }
+
+    private interface RangeTask<T> {
+        T run(int from, int to);
+    }
+
+    private static int sideToMove(int phase) {
+        return phase % 2 == 0 ? PieceColor.BLUE.ordinal() : PieceColor.RED.ordinal();
+    }
+
+    private static int pieceAt(int[] squares, int square) {
+        for (int piece = 0; piece < squares.length; piece++) {
+            if (squares[piece] == square) {
+                return piece;
+            }
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path directory = Paths.get(Tablebase.DEFAULT_DIRECTORY);
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-d")) {
+                directory = Paths.get(args[++i]);
+            } else if (args[i].equals("-t")) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                names.add(args[i]);
+            }
+        }
+        if (names.isEmpty()) {
+            names.add("STvS");
+            names.add("SvST");
+        }
+
+        try (TablebaseGenerator generator = new TablebaseGenerator(directory, threads)) {
+            for (String name : names) {
+                generator.generate(name);
+            }
+        }
+    }
+}
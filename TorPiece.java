@@ -9,32 +9,20 @@ package model;
  * @author Kuanyang
  */
 public class TorPiece extends Piece {
-    public TorPiece(PieceColor color) {
+    TorPiece(PieceColor color) {
         super(color);
     }
 
     @Override
     public boolean canMove(ChessBoard board, int fromRow, int fromCol, int toRow, int toCol) {
-        if (fromRow != toRow && fromCol != toCol) {
-            return false;
-        }
-
-        int rowDirection = Integer.compare(toRow, fromRow);
-        int colDirection = Integer.compare(toCol, fromCol);
-
-        int currentRow = fromRow + rowDirection;
-        int currentCol = fromCol + colDirection;
-
-        while (currentRow != toRow || currentCol != toCol) {
-            if (board.getPiece(currentRow, currentCol) != null) {
-                return false;
-            }
-            currentRow += rowDirection;
-            currentCol += colDirection;
-        }
+        long targets = Attacks.tor(ChessBoard.square(fromRow, fromCol), board.getOccupied())
+            & ~board.getColorMask(color);
+        return (targets & (1L << ChessBoard.square(toRow, toCol))) != 0;
+    }
 
-        Piece targetPiece = board.getPiece(toRow, toCol);
-        return targetPiece == null || targetPiece.getColor() != this.color;
+    @Override
+    public PieceType getType() {
+        return PieceType.TOR;
     }
 
     @Override
@@ -0,0 +1,81 @@
+/**
+ * Hash table of search results keyed by position hash
+ */
+
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size, always-indexed transposition table.
+ * Each slot holds the Zobrist key XOR-ed with its packed data, so a slot torn
+ * by two threads writing at once simply fails the key check on probe.
+ */
+public final class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * @param sizeMb approximate memory to use, rounded down to a power of two entries
+     */
+    public TranspositionTable(int sizeMb) {
+        long entries = Math.max(1024, (long) sizeMb * 1024 * 1024 / 16);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return packed entry data, or 0 if the position is not stored
+     */
+    public long probe(long key) {
+        int index = (int) key & mask;
+        long entry = data[index];
+        if ((keys[index] ^ entry) == key) {
+            return entry;
+        }
+        return 0;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = (int) key & mask;
+        long old = data[index];
+        // Keep a deeper result for the same position unless this one is exact
+        if ((keys[index] ^ old) == key && depth < depth(old) && bound != EXACT) {
+            return;
+        }
+        long entry = (move & 0xFFFFL)
+            | ((score & 0xFFFFL) << 16)
+            | ((long) (depth + 1) << 32)
+            | ((long) bound << 40);
+        data[index] = entry;
+        keys[index] = key ^ entry;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    public static int score(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    public static int depth(long entry) {
+        return (int) ((entry >>> 32) & 0xFF) - 1;
+    }
+
+    public static int bound(long entry) {
+        return (int) ((entry >>> 40) & 0x3);
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Random keys for incremental position hashing
+ */
+
+package model;
+
+import java.util.SplittableRandom;
+
+import static model.ChessBoard.SQUARES;
+
+/**
+ * Zobrist keys for every part of a Kwazam position: piece by color, type and square,
+ * a reversed Ram on a square, the side to move and the transform phase (moveCount % 4).
+ * Keys come from a fixed seed so hashes stay stable between runs and can be stored.
+ */
+public final class Zobrist {
+    private static final long[][][] PIECE = new long[2][PieceType.values().length][SQUARES];
+    // Same as PIECE with Tor and Xor swapped, for the board's transformed hash
+    private static final long[][][] PIECE_FLIPPED = new long[2][PieceType.values().length][SQUARES];
+    private static final long[] RAM_REVERSED = new long[SQUARES];
+    private static final long[] PHASE = new long[4];
+    private static final long RED_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x4B57415A414DL);
+        for (int color = 0; color < 2; color++) {
+            for (int type = 0; type < PieceType.values().length; type++) {
+                for (int square = 0; square < SQUARES; square++) {
+                    PIECE[color][type][square] = random.nextLong();
+                }
+            }
+        }
+        for (int color = 0; color < 2; color++) {
+            for (int type = 0; type < PieceType.values().length; type++) {
+                PIECE_FLIPPED[color][type] = PIECE[color][transformed(type)];
+            }
+        }
+        for (int square = 0; square < SQUARES; square++) {
+            RAM_REVERSED[square] = random.nextLong();
+        }
+        for (int phase = 0; phase < PHASE.length; phase++) {
+            PHASE[phase] = random.nextLong();
+        }
+        RED_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int color, int type, int square) {
+        return PIECE[color][type][square];
+    }
+
+    /**
+     * Key of the piece this one turns into at the next transform
+     */
+    public static long pieceTransformed(int color, int type, int square) {
+        return PIECE_FLIPPED[color][type][square];
+    }
+
+    public static long ramReversed(int square) {
+        return RAM_REVERSED[square];
+    }
+
+    public static long sideToMove(PieceColor color) {
+        return color == PieceColor.RED ? RED_TO_MOVE : 0;
+    }
+
+    public static long phase(int moveCount) {
+        return PHASE[moveCount & 3];
+    }
+
+    private static int transformed(int type) {
+        if (type == PieceType.TOR.ordinal()) {
+            return PieceType.XOR.ordinal();
+        }
+        if (type == PieceType.XOR.ordinal()) {
+            return PieceType.TOR.ordinal();
+        }
+        return type;
+    }
+}